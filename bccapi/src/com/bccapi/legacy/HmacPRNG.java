@@ -16,6 +16,8 @@
 
 package com.bccapi.legacy;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 
@@ -34,6 +36,10 @@ public class HmacPRNG extends SecureRandom {
 
    private int _nonce;
    private byte[] _key;
+   // Rebuilt from the key when deserialized
+   private transient Hmac.Stream _hmac;
+   private transient byte[] _message;
+   private transient byte[] _output;
    private byte[] _randomBuffer;
    private int _index;
 
@@ -48,15 +54,28 @@ public class HmacPRNG extends SecureRandom {
       _key = seed;
       _nonce = 1;
       _randomBuffer = new byte[16];
+      init();
       hmacIteration();
    }
 
+   private void init() {
+      // The key pads are hashed once here rather than for every iteration
+      _hmac = Hmac.createSha256(_key).start();
+      _message = new byte[4];
+      _output = new byte[32];
+   }
+
+   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      init();
+   }
+
    private void hmacIteration() {
-      byte[] message = new byte[4];
-      BitUtils.uint32ToByteArrayLE(_nonce++, message, 0);
-      byte[] temp = Hmac.hmacSha256(_key, message);
+      BitUtils.uint32ToByteArrayLE(_nonce++, _message, 0);
+      _hmac.update(_message);
+      _hmac.doFinal(_output, 0);
       // Only use half of the output as random bytes
-      System.arraycopy(temp, 0, _randomBuffer, 0, _randomBuffer.length);
+      System.arraycopy(_output, 0, _randomBuffer, 0, _randomBuffer.length);
       _index = 0;
    }
 
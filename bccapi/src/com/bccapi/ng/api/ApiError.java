@@ -28,6 +28,11 @@ public class ApiError extends ApiObject {
       return sb.toString();
    }
 
+   @Override
+   protected int getPayloadSize() {
+      return 4 + getStringSize(errorMessage);
+   }
+
    @Override
    protected ByteWriter toByteWriter(ByteWriter writer) {
       writer.putIntLE(errorCode);
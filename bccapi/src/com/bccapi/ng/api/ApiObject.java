@@ -1,5 +1,6 @@
 package com.bccapi.ng.api;
 
+import com.bccapi.bitlib.util.ByteBufferReader;
 import com.bccapi.bitlib.util.ByteReader;
 import com.bccapi.bitlib.util.ByteReader.InsufficientBytesException;
 import com.bccapi.bitlib.util.ByteWriter;
@@ -21,19 +22,55 @@ public abstract class ApiObject {
    protected static final byte BROADCAST_TRANSACTION_RESPONSE_TYPE = (byte) 0x13;
 
    public final ByteWriter serialize(ByteWriter writer) {
-      byte[] payload = toByteWriter(new ByteWriter(1024)).toBytes();
+      // The payload length is calculated rather than counted, so the payload
+      // is encoded once, straight after its length
       writer.put(getType());
-      writer.putIntLE(payload.length);
-      writer.putBytes(payload);
+      writer.putIntLE(getPayloadSize());
+      toByteWriter(writer);
       return writer;
    }
 
+   /**
+    * Get the number of bytes written by {@link #serialize(ByteWriter)}
+    */
+   public final int getSerializedSize() {
+      // Type and length followed by the payload
+      return 1 + 4 + getPayloadSize();
+   }
+
+   /**
+    * Get the number of bytes written by {@link ByteWriter#putString(String)}
+    * for a string, without encoding it
+    */
+   protected static int getStringSize(String s) {
+      int size = 0;
+      int length = s.length();
+      for (int i = 0; i < length; i++) {
+         char c = s.charAt(i);
+         if (c < 0x80) {
+            size += 1;
+         } else if (c < 0x800) {
+            size += 2;
+         } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+            size += 4;
+            i++;
+         } else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+            // Unpaired surrogates are replaced by '?'
+            size += 1;
+         } else {
+            size += 3;
+         }
+      }
+      // Length followed by the UTF-8 bytes
+      return 4 + size;
+   }
+
    private static ApiObject deserialize(ByteReader reader) throws ApiException {
       try {
          byte type = reader.get();
          int length = reader.getIntLE();
-         byte[] payload = reader.getBytes(length);
-         ByteReader payloadReader = new ByteReader(payload);
+         // Read the payload through a view instead of copying it
+         ByteReader payloadReader = new ByteBufferReader(reader.getSlice(length));
          if (type == ERROR_TYPE) {
             return new ApiError(payloadReader);
          } else if (type == BALANCE_TYPE) {
@@ -79,6 +116,12 @@ public abstract class ApiObject {
       throw new ApiException(BitcoinClientApi.ERROR_CODE_UNKNOWN_TYPE, "Error deserializing server response");
    }
 
+   /**
+    * Get the number of bytes written by {@link #toByteWriter(ByteWriter)},
+    * calculated without encoding the payload
+    */
+   protected abstract int getPayloadSize();
+
    protected abstract ByteWriter toByteWriter(ByteWriter writer);
 
    protected abstract byte getType();
@@ -66,6 +66,11 @@ public class Balance extends ApiObject {
       return sb.toString();
    }
 
+   @Override
+   protected int getPayloadSize() {
+      return 4 * 8;
+   }
+
    @Override
    protected ByteWriter toByteWriter(ByteWriter writer) {
       writer.putLongLE(unspent);
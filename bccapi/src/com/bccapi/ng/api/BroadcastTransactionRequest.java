@@ -24,6 +24,11 @@ public class BroadcastTransactionRequest extends ApiObject {
       // compatibility
    }
 
+   @Override
+   protected int getPayloadSize() {
+      return transaction.getSerializedSize();
+   }
+
    @Override
    protected ByteWriter toByteWriter(ByteWriter writer) {
       transaction.toByteWriter(writer);
@@ -22,6 +22,11 @@ public class BroadcastTransactionResponse extends ApiObject {
       // compatibility
    }
 
+   @Override
+   protected int getPayloadSize() {
+      return Sha256Hash.HASH_LENGTH;
+   }
+
    @Override
    protected ByteWriter toByteWriter(ByteWriter writer) {
       writer.putSha256Hash(hash);
@@ -33,6 +33,15 @@ public class QueryBalanceRequest extends ApiObject {
       // compatibility
    }
 
+   @Override
+   protected int getPayloadSize() {
+      int size = 4;
+      for (Address address : addresses) {
+         size += address.getAllAddressBytes().length;
+      }
+      return size;
+   }
+
    @Override
    protected ByteWriter toByteWriter(ByteWriter writer) {
       writer.putIntLE(addresses.size());
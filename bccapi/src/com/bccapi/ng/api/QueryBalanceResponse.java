@@ -21,6 +21,11 @@ public class QueryBalanceResponse extends ApiObject {
       // compatibility
    }
 
+   @Override
+   protected int getPayloadSize() {
+      return balance.getSerializedSize();
+   }
+
    @Override
    protected ByteWriter toByteWriter(ByteWriter writer) {
       balance.serialize(writer);
@@ -40,6 +40,15 @@ public class QueryTransactionInventoryRequest extends ApiObject {
       // compatibility
    }
 
+   @Override
+   protected int getPayloadSize() {
+      int size = 4;
+      for (Address address : addresses) {
+         size += address.getAllAddressBytes().length;
+      }
+      return size + 4;
+   }
+
    @Override
    protected ByteWriter toByteWriter(ByteWriter writer) {
       writer.putIntLE(addresses.size());
@@ -48,6 +48,11 @@ public class QueryTransactionInventoryResponse extends ApiObject {
       // compatibility
    }
 
+   @Override
+   protected int getPayloadSize() {
+      return 4 + transactions.size() * (Sha256Hash.HASH_LENGTH + 4) + 4;
+   }
+
    @Override
    protected ByteWriter toByteWriter(ByteWriter writer) {
       writer.putIntLE(transactions.size());
@@ -31,6 +31,11 @@ public class QueryTransactionSummaryRequest extends ApiObject {
       // compatibility
    }
 
+   @Override
+   protected int getPayloadSize() {
+      return 4 + transactionHashes.size() * Sha256Hash.HASH_LENGTH;
+   }
+
    @Override
    protected ByteWriter toByteWriter(ByteWriter writer) {
       writer.putIntLE(transactionHashes.size());
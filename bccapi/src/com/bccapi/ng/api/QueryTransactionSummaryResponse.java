@@ -31,6 +31,15 @@ public class QueryTransactionSummaryResponse extends ApiObject {
       // compatibility
    }
 
+   @Override
+   protected int getPayloadSize() {
+      int size = 4;
+      for (TransactionSummary item : transactions) {
+         size += item.getSerializedSize();
+      }
+      return size + 4;
+   }
+
    @Override
    protected ByteWriter toByteWriter(ByteWriter writer) {
       writer.putIntLE(transactions.size());
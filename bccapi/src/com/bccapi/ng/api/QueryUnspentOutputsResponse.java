@@ -1,10 +1,10 @@
 package com.bccapi.ng.api;
 
-import java.util.HashSet;
 import java.util.Set;
 
 import com.bccapi.bitlib.model.Script.ScriptParsingException;
 import com.bccapi.bitlib.model.UnspentTransactionOutput;
+import com.bccapi.bitlib.model.UnspentTransactionOutputSet;
 import com.bccapi.bitlib.util.ByteReader;
 import com.bccapi.bitlib.util.ByteReader.InsufficientBytesException;
 import com.bccapi.bitlib.util.ByteWriter;
@@ -45,13 +45,21 @@ public class QueryUnspentOutputsResponse extends ApiObject {
    private Set<UnspentTransactionOutput> setFromReader(ByteReader reader) throws InsufficientBytesException,
          ScriptParsingException {
       int size = reader.getIntLE();
-      Set<UnspentTransactionOutput> set = new HashSet<UnspentTransactionOutput>();
+      Set<UnspentTransactionOutput> set = new UnspentTransactionOutputSet();
       for (int i = 0; i < size; i++) {
          set.add(new UnspentTransactionOutput(reader));
       }
       return set;
    }
 
+   private static int getSetSize(Set<UnspentTransactionOutput> set) {
+      int size = 4;
+      for (UnspentTransactionOutput output : set) {
+         size += output.getSerializedSize();
+      }
+      return size;
+   }
+
    private void setToWriter(Set<UnspentTransactionOutput> set, ByteWriter writer) {
       writer.putIntLE(set.size());
       for (UnspentTransactionOutput output : set) {
@@ -59,6 +67,11 @@ public class QueryUnspentOutputsResponse extends ApiObject {
       }
    }
 
+   @Override
+   protected int getPayloadSize() {
+      return getSetSize(unspent) + getSetSize(change) + getSetSize(receiving) + 4;
+   }
+
    @Override
    protected ByteWriter toByteWriter(ByteWriter writer) {
       setToWriter(unspent, writer);
@@ -51,6 +51,14 @@ public class TransactionSummary extends ApiObject implements Comparable<Transact
       return items;
    }
 
+   private static int getItemsSize(Item[] items) {
+      int size = 2;
+      for (Item item : items) {
+         size += item.address.getAllAddressBytes().length + 8;
+      }
+      return size;
+   }
+
    private void writeItems(Item[] items, ByteWriter writer) {
       writer.putShortLE((short) items.length);
       for (Item item : items) {
@@ -88,6 +96,11 @@ public class TransactionSummary extends ApiObject implements Comparable<Transact
       return other.hash.equals(this.hash);
    }
 
+   @Override
+   protected int getPayloadSize() {
+      return Sha256Hash.HASH_LENGTH + 4 + 4 + getItemsSize(inputs) + getItemsSize(outputs);
+   }
+
    @Override
    protected ByteWriter toByteWriter(ByteWriter writer) {
       writer.putSha256Hash(hash);
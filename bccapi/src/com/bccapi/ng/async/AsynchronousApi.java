@@ -2,7 +2,6 @@ package com.bccapi.ng.async;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +12,7 @@ import com.bccapi.bitlib.model.Address;
 import com.bccapi.bitlib.model.NetworkParameters;
 import com.bccapi.bitlib.model.Transaction;
 import com.bccapi.bitlib.util.Sha256Hash;
+import com.bccapi.bitlib.util.Sha256HashMap;
 import com.bccapi.ng.api.ApiError;
 import com.bccapi.ng.api.ApiException;
 import com.bccapi.ng.api.Balance;
@@ -142,7 +142,7 @@ public abstract class AsynchronousApi {
 
          // Build a map of all the transactions we already have and a list of
          // transactions to query
-         Map<Sha256Hash, TransactionSummary> map = new HashMap<Sha256Hash, TransactionSummary>();
+         Map<Sha256Hash, TransactionSummary> map = new Sha256HashMap<TransactionSummary>(inv.transactions.size());
          List<Sha256Hash> toFetch = new LinkedList<Sha256Hash>();
          for (QueryTransactionInventoryResponse.Item item : inv.transactions) {
             if (_accountCache.hasTransactionSummary(item.hash)) {
@@ -60,9 +60,9 @@ public class BitcoinClientApiImpl implements BitcoinClientApi {
    private HttpURLConnection sendRequest(ApiObject request, String function) throws ApiException {
       try {
          HttpURLConnection connection = getHttpConnection(function);
-         byte[] toSend = request.serialize(new ByteWriter(1024)).toBytes();
-         connection.setRequestProperty("Content-Length", String.valueOf(toSend.length));
-         connection.getOutputStream().write(toSend);
+         ByteWriter toSend = request.serialize(new ByteWriter(request.getSerializedSize()));
+         connection.setRequestProperty("Content-Length", String.valueOf(toSend.length()));
+         toSend.writeTo(connection.getOutputStream());
          int status = connection.getResponseCode();
          if (status != 200) {
             throw new ApiException(BitcoinClientApi.ERROR_CODE_UNEXPECTED_SERVER_RESPONSE, "Unexpected status code: "
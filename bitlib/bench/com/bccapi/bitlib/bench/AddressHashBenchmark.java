@@ -0,0 +1,111 @@
+/**
+ * Copyright 2011 bccapi.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bccapi.bitlib.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.bccapi.bitlib.util.HashUtils;
+
+/**
+ * Compares the batched address hash, which runs RIPEMD160 over many keys in
+ * lockstep, with hashing the same keys one at a time. Run it with the bench
+ * target of the bitlib build.
+ * <p>
+ * The keys are random 33 and 65 byte arrays with a fixed seed, as the hashes
+ * do not care whether the bytes are a valid public key. Each round hashes all
+ * keys both ways and checks that the results agree. The first rounds warm up
+ * the JIT and are not reported.
+ */
+public class AddressHashBenchmark {
+
+   private static final int KEYS = 4096;
+   private static final int WARMUP_ROUNDS = 20;
+   private static final int ROUNDS = 20;
+   private static final int ITERATIONS = 50;
+
+   public static void main(String[] args) {
+      run("compressed keys", createKeys(33));
+      run("uncompressed keys", createKeys(65));
+   }
+
+   private static byte[][] createKeys(int length) {
+      Random random = new Random(length);
+      byte[][] keys = new byte[KEYS][length];
+      for (byte[] key : keys) {
+         random.nextBytes(key);
+         key[0] = (byte) (length == 33 ? 0x02 : 0x04);
+      }
+      return keys;
+   }
+
+   private static void run(String name, byte[][] keys) {
+      long[] single = new long[ROUNDS];
+      long[] batched = new long[ROUNDS];
+      for (int round = -WARMUP_ROUNDS; round < ROUNDS; round++) {
+         long singleTime = timeSingle(keys);
+         long batchedTime = timeBatched(keys);
+         if (round >= 0) {
+            single[round] = singleTime;
+            batched[round] = batchedTime;
+         }
+      }
+      System.out.println(name + ", ns per key (median of " + ROUNDS + " rounds):");
+      System.out.println("   addressHash(byte[])   " + perKey(single));
+      System.out.println("   addressHash(byte[][]) " + perKey(batched));
+   }
+
+   private static long timeSingle(byte[][] keys) {
+      byte[][] result = new byte[keys.length][];
+      long start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS; i++) {
+         for (int j = 0; j < keys.length; j++) {
+            result[j] = HashUtils.addressHash(keys[j]);
+         }
+      }
+      long time = System.nanoTime() - start;
+      check(keys, result);
+      return time;
+   }
+
+   private static long timeBatched(byte[][] keys) {
+      byte[][] result = null;
+      long start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS; i++) {
+         result = HashUtils.addressHash(keys);
+      }
+      long time = System.nanoTime() - start;
+      check(keys, result);
+      return time;
+   }
+
+   private static void check(byte[][] keys, byte[][] result) {
+      // Also keeps the JIT from dropping the hashing as dead code
+      for (int i = 0; i < keys.length; i++) {
+         if (!Arrays.equals(result[i], HashUtils.addressHash(keys[i]))) {
+            throw new RuntimeException("Address hash mismatch for key " + i);
+         }
+      }
+   }
+
+   private static long perKey(long[] times) {
+      long[] sorted = times.clone();
+      Arrays.sort(sorted);
+      return sorted[sorted.length / 2] / ((long) ITERATIONS * KEYS);
+   }
+
+}
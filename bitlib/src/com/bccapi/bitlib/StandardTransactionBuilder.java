@@ -1,5 +1,6 @@
 package com.bccapi.bitlib;
 
+import java.security.MessageDigest;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -8,6 +9,7 @@ import com.bccapi.bitlib.crypto.PrivateKeyRing;
 import com.bccapi.bitlib.crypto.PublicKey;
 import com.bccapi.bitlib.crypto.PublicKeyRing;
 import com.bccapi.bitlib.model.Address;
+import com.bccapi.bitlib.model.CompactInt;
 import com.bccapi.bitlib.model.NetworkParameters;
 import com.bccapi.bitlib.model.ScriptInput;
 import com.bccapi.bitlib.model.ScriptInputStandard;
@@ -21,6 +23,7 @@ import com.bccapi.bitlib.model.UnspentTransactionOutput;
 import com.bccapi.bitlib.util.ByteWriter;
 import com.bccapi.bitlib.util.CoinUtil;
 import com.bccapi.bitlib.util.HashUtils;
+import com.bccapi.bitlib.util.Sha256Hash;
 
 public class StandardTransactionBuilder {
 
@@ -74,6 +77,9 @@ public class StandardTransactionBuilder {
          // Create transaction with valid outputs and empty inputs
          Transaction transaction = new Transaction(1, inputs, _outputs, 0);
 
+         // Calculate the transaction hashes that have to be signed
+         byte[][] hashes = hashTransactionInputs(transaction, _funding);
+
          for (int i = 0; i < _funding.length; i++) {
             UnspentTransactionOutput f = _funding[i];
 
@@ -93,16 +99,7 @@ public class StandardTransactionBuilder {
                throw new RuntimeException("Public key not found");
             }
 
-            // Set the input script to the funding output script
-            inputs[i].script = ScriptInput.fromOutputScript(_funding[i].script);
-
-            // Calculate the transaction hash that has to be signed
-            byte[] hash = hashTransaction(transaction);
-
-            // Set the input to the empty script again
-            inputs[i] = new TransactionInput(_funding[i].outPoint, ScriptInput.EMPTY);
-
-            _signingRequests[i] = new SigningRequest(publicKey, hash);
+            _signingRequests[i] = new SigningRequest(publicKey, hashes[i]);
 
          }
       }
@@ -339,16 +336,75 @@ public class StandardTransactionBuilder {
       return sum;
    }
 
-   private static byte[] hashTransaction(Transaction t) {
-      ByteWriter writer = new ByteWriter(1024);
-      t.toByteWriter(writer);
+   /**
+    * Calculate the hashes to sign for each input of a transaction whose input
+    * scripts are empty. The preimage for input i is the transaction with the
+    * funding output script as the script of input i, followed by the hash
+    * type. The preimages for inputs i and up share the serialization of the
+    * inputs before i, so that prefix is hashed only once and resumed for every
+    * input instead of serializing and hashing each preimage from scratch.
+    * <p>
+    * The prefix is not block aligned, so it is resumed by cloning the digest
+    * rather than through a midstate, which also keeps any hardware support of
+    * the platform digest.
+    */
+   private static byte[][] hashTransactionInputs(Transaction t, UnspentTransactionOutput[] funding) {
+      // Serialize the transaction with empty input scripts once, and note
+      // where each input ends
+      // Transaction plus hash type
+      ByteWriter writer = new ByteWriter(t.getSerializedSize() + 4);
+      writer.putIntLE(t.version);
+      writer.putCompactInt(t.inputs.length);
+      int inputStart = writer.length();
+      int[] inputEnds = new int[t.inputs.length];
+      for (int i = 0; i < t.inputs.length; i++) {
+         t.inputs[i].toByteWriter(writer);
+         inputEnds[i] = writer.length();
+      }
+      writer.putCompactInt(t.outputs.length);
+      for (TransactionOutput output : t.outputs) {
+         output.toByteWriter(writer);
+      }
+      writer.putIntLE(t.lockTime);
       // We also have to write a hash type.
       int hashType = 1;
       writer.putIntLE(hashType);
-      // Note that this is NOT reversed to ensure it will be signed
-      // correctly. If it were to be printed out
-      // however then we would expect that it is IS reversed.
-      return HashUtils.doubleSha256(writer.toBytes());
+      byte[] bytes = writer.toBytes();
+
+      byte[][] hashes = new byte[t.inputs.length][];
+      MessageDigest prefix = HashUtils.createSha256();
+      prefix.update(bytes, 0, inputStart);
+      for (int i = 0; i < t.inputs.length; i++) {
+         // The input with the funding output script instead of the empty
+         // script
+         TransactionInput signingInput = new TransactionInput(t.inputs[i].outPoint,
+               ScriptInput.fromOutputScript(funding[i].script));
+         ByteWriter inputWriter = new ByteWriter(signingInput.getSerializedSize());
+         signingInput.toByteWriter(inputWriter);
+         byte[] input = inputWriter.toBytes();
+
+         // The last input does not need the prefix afterwards
+         MessageDigest digest = prefix;
+         if (i < t.inputs.length - 1) {
+            try {
+               digest = (MessageDigest) prefix.clone();
+            } catch (CloneNotSupportedException e) {
+               throw new RuntimeException(e); // Cannot happen for SHA-256.
+            }
+         }
+         digest.update(input, 0, input.length);
+         digest.update(bytes, inputEnds[i], bytes.length - inputEnds[i]);
+         byte[] hash = digest.digest();
+         // Note that this is NOT reversed to ensure it will be signed
+         // correctly. If it were to be printed out
+         // however then we would expect that it is IS reversed.
+         hashes[i] = HashUtils.sha256(hash);
+
+         // Extend the shared prefix with the input with the empty script
+         prefix.update(bytes, inputStart, inputEnds[i] - inputStart);
+         inputStart = inputEnds[i];
+      }
+      return hashes;
    }
 
    /**
@@ -362,18 +418,19 @@ public class StandardTransactionBuilder {
     * @return The estimated transaction size
     */
    private static int estimateTransacrionSize(UnsignedTransaction unsigned) {
-      // Create fake empty inputs
-      TransactionInput[] inputs = new TransactionInput[unsigned._funding.length];
-      for (int i = 0; i < inputs.length; i++) {
-         inputs[i] = new TransactionInput(unsigned._funding[i].outPoint, ScriptInput.EMPTY);
+      // The size of the transaction with empty inputs, calculated without
+      // building it
+      int numInputs = unsigned._funding.length;
+      int emptyInputSize = Sha256Hash.HASH_LENGTH + 4 + ScriptInput.EMPTY.getSerializedSize() + 4;
+      int txSize = 4 + CompactInt.getSerializedSize(numInputs) + numInputs * emptyInputSize;
+      txSize += CompactInt.getSerializedSize(unsigned._outputs.length);
+      for (TransactionOutput output : unsigned._outputs) {
+         txSize += output.getSerializedSize();
       }
-
-      // Create fake transaction
-      Transaction t = new Transaction(1, inputs, unsigned._outputs, 0);
-      int txSize = t.toBytes().length;
+      txSize += 4;
 
       // Add maximum size for each input
-      txSize += 140 * t.inputs.length;
+      txSize += 140 * numInputs;
 
       return txSize;
    }
@@ -1,5 +1,6 @@
 package com.bccapi.bitlib.crypto;
 
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -14,6 +15,20 @@ public class Hmac {
    private static final int SHA512_BLOCK_SIZE = 128;
 
    public static byte[] hmacSha256(byte[] key, byte[] message) {
+      return createSha256(key).hmac(message);
+   }
+
+   public static byte[] hmacSha512(byte[] key, byte[] message) {
+      return createSha512(key).hmac(message);
+   }
+
+   /**
+    * Create a HMAC-SHA256 instance for a fixed key. The digest states after
+    * absorbing the inner and outer key pads are computed once, so
+    * authenticating a message with the instance does no key setup hashing.
+    * An instance is immutable and may be shared between threads.
+    */
+   public static Hmac createSha256(byte[] key) {
       MessageDigest digest;
       try {
          digest = MessageDigest.getInstance(SHA256);
@@ -21,10 +36,16 @@ public class Hmac {
          // Only happens if the platform does not support SHA-256
          throw new RuntimeException(e);
       }
-      return hmac(digest, SHA256_BLOCK_SIZE, key, message);
+      return new Hmac(digest, SHA256_BLOCK_SIZE, key);
    }
 
-   public static byte[] hmacSha512(byte[] key, byte[] message) {
+   /**
+    * Create a HMAC-SHA512 instance for a fixed key. The digest states after
+    * absorbing the inner and outer key pads are computed once, so
+    * authenticating a message with the instance does no key setup hashing.
+    * An instance is immutable and may be shared between threads.
+    */
+   public static Hmac createSha512(byte[] key) {
       MessageDigest digest;
       try {
          digest = MessageDigest.getInstance(SHA512);
@@ -32,11 +53,133 @@ public class Hmac {
          // Only happens if the platform does not support SHA-512
          throw new RuntimeException(e);
       }
-      return hmac(digest, SHA512_BLOCK_SIZE, key, message);
+      return new Hmac(digest, SHA512_BLOCK_SIZE, key);
+   }
+
+   // Digest states after absorbing the inner and outer key pads. They are
+   // never updated, only cloned.
+   private final MessageDigest _inner;
+   private final MessageDigest _outer;
+
+   private Hmac(MessageDigest digest, int blockSize, byte[] key) {
+      key = padKey(digest, blockSize, key);
+      _inner = cloneDigest(digest);
+      _inner.update(xorPad(key, (byte) 0x36));
+      _outer = cloneDigest(digest);
+      _outer.update(xorPad(key, (byte) 0x5c));
    }
 
-   private static byte[] hmac(MessageDigest digest, int blockSize, byte[] key, byte[] message) {
+   private Hmac(MessageDigest inner, MessageDigest outer) {
+      _inner = inner;
+      _outer = outer;
+   }
 
+   /**
+    * Calculate the HMAC of the concatenation of one or more byte arrays.
+    */
+   public byte[] hmac(byte[]... parts) {
+      MessageDigest inner = cloneDigest(_inner);
+      for (byte[] part : parts) {
+         inner.update(part);
+      }
+      MessageDigest outer = cloneDigest(_outer);
+      outer.update(inner.digest());
+      return outer.digest();
+   }
+
+   /**
+    * Get the length of the HMAC in bytes
+    */
+   public int getMacLength() {
+      return _outer.getDigestLength();
+   }
+
+   /**
+    * Start authenticating a message that is added in parts.
+    */
+   public Stream start() {
+      return new Stream();
+   }
+
+   /**
+    * Create an instance for the same key that prepends a fixed prefix to every
+    * message. The prefix is absorbed into the inner digest state once, which
+    * saves hashing it again for every message.
+    */
+   public Hmac withPrefix(byte[]... prefix) {
+      MessageDigest inner = cloneDigest(_inner);
+      for (byte[] part : prefix) {
+         inner.update(part);
+      }
+      return new Hmac(inner, _outer);
+   }
+
+   /**
+    * A message being authenticated in parts. The keyed digest states are
+    * copied from the instance that created it, so no key setup hashing is
+    * done. A stream may be used for further messages after
+    * {@link #doFinal(byte[], int)}. This class is not thread-safe.
+    */
+   public class Stream {
+
+      private MessageDigest _digest;
+
+      private Stream() {
+         _digest = cloneDigest(_inner);
+      }
+
+      public void update(byte input) {
+         _digest.update(input);
+      }
+
+      public void update(byte[] input) {
+         _digest.update(input, 0, input.length);
+      }
+
+      public void update(byte[] input, int offset, int length) {
+         _digest.update(input, offset, length);
+      }
+
+      /**
+       * Finish the HMAC and write it to an output buffer. The stream is reset
+       * to authenticate a new message with the same key afterwards.
+       *
+       * @return The number of bytes written
+       */
+      public int doFinal(byte[] out, int offset) {
+         MessageDigest outer = cloneDigest(_outer);
+         outer.update(_digest.digest());
+         _digest = cloneDigest(_inner);
+         try {
+            return outer.digest(out, offset, outer.getDigestLength());
+         } catch (DigestException e) {
+            // Cannot happen, as the length is the digest length
+            throw new RuntimeException(e);
+         }
+      }
+
+      /**
+       * Finish the HMAC and return it. The stream is reset to authenticate a
+       * new message with the same key afterwards.
+       */
+      public byte[] doFinal() {
+         byte[] out = new byte[getMacLength()];
+         doFinal(out, 0);
+         return out;
+      }
+
+   }
+
+   private static MessageDigest cloneDigest(MessageDigest digest) {
+      try {
+         return (MessageDigest) digest.clone();
+      } catch (CloneNotSupportedException e) {
+         // Only happens if the platform digest cannot be cloned
+         throw new RuntimeException(e);
+      }
+   }
+
+   private static byte[] padKey(MessageDigest digest, int blockSize, byte[] key) {
       // Ensure sufficient key length
       if (key.length > blockSize) {
          key = hash(digest, key);
@@ -47,20 +190,15 @@ public class Hmac {
          System.arraycopy(key, 0, temp, 0, key.length);
          key = temp;
       }
+      return key;
+   }
 
-      // Prepare o key pad
-      byte[] o_key_pad = new byte[blockSize];
-      for (int i = 0; i < blockSize; i++) {
-         o_key_pad[i] = (byte) (0x5c ^ key[i]);
-      }
-
-      // Prepare i key pad
-      byte[] i_key_pad = new byte[blockSize];
-      for (int i = 0; i < blockSize; i++) {
-         i_key_pad[i] = (byte) (0x36 ^ key[i]);
+   private static byte[] xorPad(byte[] key, byte pad) {
+      byte[] result = new byte[key.length];
+      for (int i = 0; i < key.length; i++) {
+         result[i] = (byte) (pad ^ key[i]);
       }
-
-      return hash(digest, o_key_pad, hash(digest, i_key_pad, message));
+      return result;
    }
 
    private static byte[] hash(MessageDigest digest, byte[] data) {
@@ -69,13 +207,6 @@ public class Hmac {
       return digest.digest();
    }
 
-   private static byte[] hash(MessageDigest digest, byte[] data1, byte[] data2) {
-      digest.reset();
-      digest.update(data1, 0, data1.length);
-      digest.update(data2, 0, data2.length);
-      return digest.digest();
-   }
-
    /**
     * Run test vectors from RFC-4231
     * 
@@ -121,6 +252,20 @@ public class Hmac {
          return false;
       }
 
+      // Test case 3 again, streaming the message in two parts twice
+      Hmac.Stream stream_256 = Hmac.createSha256(key).start();
+      Hmac.Stream stream_512 = Hmac.createSha512(key).start();
+      for (int i = 0; i < 2; i++) {
+         stream_256.update(data, 0, 7);
+         stream_256.update(data, 7, data.length - 7);
+         stream_512.update(data, 0, 7);
+         stream_512.update(data, 7, data.length - 7);
+         if (!BitUtils.areEqual(stream_256.doFinal(), expected_256)
+               || !BitUtils.areEqual(stream_512.doFinal(), expected_512)) {
+            return false;
+         }
+      }
+
       return true;
    }
 }
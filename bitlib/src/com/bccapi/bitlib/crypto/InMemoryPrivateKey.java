@@ -11,6 +11,7 @@ import java.security.SecureRandom;
 import com.bccapi.bitlib.crypto.ec.EcTools;
 import com.bccapi.bitlib.crypto.ec.Parameters;
 import com.bccapi.bitlib.crypto.ec.Point;
+import com.bccapi.bitlib.crypto.ec.Secp256k1Scalar;
 import com.bccapi.bitlib.model.NetworkParameters;
 import com.bccapi.bitlib.util.Base58;
 import com.bccapi.bitlib.util.HashUtils;
@@ -24,6 +25,7 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
 
    private final BigInteger _privateKey;
    private final PublicKey _publicKey;
+   private transient Rfc6979NonceGenerator _nonceGenerator;
 
    /**
     * Construct a random private key using a secure random source. Using this
@@ -58,7 +60,7 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
          d = new BigInteger(bytes);
       } while (d.equals(BigInteger.ZERO) || (d.compareTo(Parameters.n) >= 0));
 
-      Point Q = EcTools.multiply(Parameters.G, d);
+      Point Q = EcTools.multiplyG(d);
       _privateKey = d;
       if (compressed) {
          // Convert Q to a compressed point on the curve
@@ -96,7 +98,7 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
       byte[] keyBytes = new byte[33];
       System.arraycopy(bytes, 0, keyBytes, 1, 32);
       _privateKey = new BigInteger(keyBytes);
-      Point Q = EcTools.multiply(Parameters.G, _privateKey);
+      Point Q = EcTools.multiplyG(_privateKey);
       if (compressed) {
          // Convert Q to a compressed point on the curve
          Q = new Point(Q.getCurve(), Q.getX(), Q.getY(), true);
@@ -156,7 +158,7 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
       decoded[0] = 0;
 
       _privateKey = new BigInteger(decoded);
-      Point Q = EcTools.multiply(Parameters.G, _privateKey);
+      Point Q = EcTools.multiplyG(_privateKey);
       if (compressed) {
          // Convert Q to a compressed point on the curve
          Q = new Point(Q.getCurve(), Q.getX(), Q.getY(), true);
@@ -169,47 +171,56 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
       return _publicKey;
    }
 
+   /**
+    * Get the RFC 6979 nonce generator for this key. The generator is immutable,
+    * so racing threads at worst create it more than once.
+    */
+   private Rfc6979NonceGenerator getNonceGenerator() {
+      if (_nonceGenerator == null) {
+         _nonceGenerator = new Rfc6979NonceGenerator(getPrivateKeyBytes());
+      }
+      return _nonceGenerator;
+   }
+
    @Override
    protected BigInteger[] generateSignature(byte[] message) {
       BigInteger n = Parameters.n;
-      BigInteger e = calculateE(n, message);
-      BigInteger r = null;
-      BigInteger s = null;
-      SecureRandom random = new SecureRandom();
+      int[] e = Secp256k1Scalar.create(calculateE(n, message));
+      int[] d = Secp256k1Scalar.create(_privateKey);
+      int[] k = Secp256k1Scalar.create();
+      int[] r = Secp256k1Scalar.create();
+      int[] s = Secp256k1Scalar.create();
+      byte[] hash = new byte[32];
+      Secp256k1Scalar.getBytes(e, hash, 0);
+      Rfc6979NonceGenerator.Nonces nonces = getNonceGenerator().start(hash);
       // 5.3.2
       do // generate s
       {
-         BigInteger k = null;
-         int nBitLength = n.bitLength();
-
          do // generate r
          {
+            // Use the first nonce in the range [1, n - 1]
+            boolean overflow;
             do {
-               // make a BigInteger from bytes to ensure that Andriod and
-               // 'classic' java make the same BigIntegers
-               byte[] bytes = new byte[nBitLength / 8];
-               random.nextBytes(bytes);
-               bytes[0] = (byte) (bytes[0] & 0x7F); // ensure positive number
-               k = new BigInteger(bytes);
-            } while (k.equals(BigInteger.ZERO));
+               overflow = Secp256k1Scalar.setBytes(k, nonces.next(), 0);
+            } while (overflow || Secp256k1Scalar.isZero(k));
 
-            Point p = EcTools.multiply(Parameters.G, k);
+            Point p = EcTools.multiplyG(Secp256k1Scalar.toBigInteger(k));
 
             // 5.3.3
-            BigInteger x = p.getX().toBigInteger();
-
-            r = x.mod(n);
-         } while (r.equals(BigInteger.ZERO));
-
-         BigInteger d = _privateKey;
+            Secp256k1Scalar.setBytes(r, EcTools.integerToBytes(p.getX().toBigInteger(), 32), 0);
+         } while (Secp256k1Scalar.isZero(r));
 
-         s = k.modInverse(n).multiply(e.add(d.multiply(r))).mod(n);
-      } while (s.equals(BigInteger.ZERO));
+         // s = k^-1 * (e + d * r)
+         Secp256k1Scalar.mul(s, d, r);
+         Secp256k1Scalar.add(s, s, e);
+         Secp256k1Scalar.invert(k, k);
+         Secp256k1Scalar.mul(s, s, k);
+      } while (Secp256k1Scalar.isZero(s));
 
       BigInteger[] res = new BigInteger[2];
 
-      res[0] = r;
-      res[1] = s;
+      res[0] = Secp256k1Scalar.toBigInteger(r);
+      res[1] = Secp256k1Scalar.toBigInteger(s);
 
       return res;
    }
@@ -261,8 +272,7 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
       byte[] keyBytes = getPrivateKeyBytes();
       System.arraycopy(keyBytes, 0, toEncode, 1, keyBytes.length);
       // Set checksum
-      byte[] checkSum = HashUtils.doubleSha256(toEncode, 0, 1 + 32);
-      System.arraycopy(checkSum, 0, toEncode, 1 + 32, 4);
+      HashUtils.checksum(toEncode, 0, 1 + 32, toEncode, 1 + 32);
       // Encode
       return Base58.encode(toEncode);
    }
@@ -277,8 +287,7 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
       // Set compressed indicator
       toEncode[33] = 0x01;
       // Set checksum
-      byte[] checkSum = HashUtils.doubleSha256(toEncode, 0, 1 + 32 + 1);
-      System.arraycopy(checkSum, 0, toEncode, 1 + 32 + 1, 4);
+      HashUtils.checksum(toEncode, 0, 1 + 32 + 1, toEncode, 1 + 32 + 1);
       // Encode
       return Base58.encode(toEncode);
    }
@@ -3,21 +3,54 @@ package com.bccapi.bitlib.crypto;
 import java.io.Serializable;
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.BitSet;
 
 import com.bccapi.bitlib.crypto.ec.EcTools;
+import com.bccapi.bitlib.crypto.ec.JacobianPoint;
 import com.bccapi.bitlib.crypto.ec.Parameters;
 import com.bccapi.bitlib.crypto.ec.Point;
+import com.bccapi.bitlib.crypto.ec.PointCache;
+import com.bccapi.bitlib.crypto.ec.Secp256k1Scalar;
 import com.bccapi.bitlib.util.ByteReader;
 import com.bccapi.bitlib.util.ByteReader.InsufficientBytesException;
 import com.bccapi.bitlib.util.HashUtils;
 import com.bccapi.bitlib.util.HexUtils;
 
+/**
+ * A public key. Instances are immutable and may be shared between threads.
+ */
 public class PublicKey implements Serializable {
 
    private static final long serialVersionUID = 1L;
 
+   /**
+    * The number of decoded points kept in the cache shared by all public keys
+    */
+   private static final int POINT_CACHE_SIZE = 4096;
+
+   private static final PointCache POINT_CACHE = new PointCache(POINT_CACHE_SIZE);
+
+   public static class VerificationRequest {
+      // The public key to verify the signature with
+      public PublicKey publicKey;
+      // The data that was signed. For transactions this is the transaction
+      // hash
+      public byte[] data;
+      // The DER encoded signature followed by the hash type
+      public byte[] signature;
+
+      public VerificationRequest(PublicKey publicKey, byte[] data, byte[] signature) {
+         this.publicKey = publicKey;
+         this.data = data;
+         this.signature = signature;
+      }
+
+   }
+
    private final byte[] _pubKeyBytes;
-   private byte[] _pubKeyHash;
+   // Lazily calculated. The hash is volatile as the contents of an array are
+   // not safely published by a data race, the point is immutable.
+   private volatile byte[] _pubKeyHash;
    private Point _Q;
 
    public PublicKey(byte[] publicKeyBytes) {
@@ -29,10 +62,12 @@ public class PublicKey implements Serializable {
    }
 
    public byte[] getPublicKeyHash() {
-      if (_pubKeyHash == null) {
-         _pubKeyHash = HashUtils.addressHash(_pubKeyBytes);
+      byte[] hash = _pubKeyHash;
+      if (hash == null) {
+         hash = HashUtils.addressHash(_pubKeyBytes);
+         _pubKeyHash = hash;
       }
-      return _pubKeyHash;
+      return hash;
    }
 
    @Override
@@ -67,7 +102,79 @@ public class PublicKey implements Serializable {
       if (reader.available() != 1) {
          return false;
       }
-      return verifySignature(data, params[0], params[1], getQ());
+      // The key comes from a script, so it may not be a valid point
+      Point Q = tryGetQ();
+      if (Q == null) {
+         return false;
+      }
+      return verifySignature(data, params[0], params[1], Q);
+   }
+
+   /**
+    * Verify a batch of standard bitcoin signatures.
+    * <p>
+    * This gives the same result as calling
+    * {@link #verifyStandardBitcoinSignature(byte[], byte[])} for each request,
+    * but the modular inversions of the s values are shared by all requests
+    * and the resulting points are never converted to affine coordinates.
+    *
+    * @param requests
+    *           The signatures to verify
+    * @return A bit set where bit i is set if the signature of request i is
+    *         valid
+    */
+   public static BitSet verifyStandardBitcoinSignatures(VerificationRequest[] requests) {
+      BitSet result = new BitSet(requests.length);
+      BigInteger n = Parameters.n;
+
+      // Decode and range check all signatures and public keys, and collect
+      // the s values of those that pass. A request with an invalid key fails
+      // on its own without affecting the rest of the batch.
+      int[] indexes = new int[requests.length];
+      BigInteger[] rValues = new BigInteger[requests.length];
+      BigInteger[] sValues = new BigInteger[requests.length];
+      Point[] points = new Point[requests.length];
+      int count = 0;
+      for (int i = 0; i < requests.length; i++) {
+         ByteReader reader = new ByteReader(requests[i].signature);
+         BigInteger[] params = decodeSignatureParameters(reader);
+         if (params == null || reader.available() != 1) {
+            continue;
+         }
+         if (!isInRange(params[0], n) || !isInRange(params[1], n)) {
+            continue;
+         }
+         Point Q = requests[i].publicKey.tryGetQ();
+         if (Q == null) {
+            continue;
+         }
+         indexes[count] = i;
+         rValues[count] = params[0];
+         sValues[count] = params[1];
+         points[count] = Q;
+         count++;
+      }
+
+      int[][] inverses = new int[count][];
+      for (int i = 0; i < count; i++) {
+         inverses[i] = Secp256k1Scalar.create(sValues[i]);
+      }
+      Secp256k1Scalar.invertAll(inverses, inverses);
+      for (int i = 0; i < count; i++) {
+         VerificationRequest request = requests[indexes[i]];
+         if (verifySignatureWithInverse(request.data, rValues[i], inverses[i], points[i])) {
+            result.set(indexes[i]);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Get the cache of decoded points shared by all public keys, for instance
+    * to monitor its hit rate.
+    */
+   public static PointCache getPointCache() {
+      return POINT_CACHE;
    }
 
    /**
@@ -78,14 +185,37 @@ public class PublicKey implements Serializable {
    }
 
    private Point getQ() {
-      if (_Q == null) {
-         _Q = Parameters.curve.decodePoint(_pubKeyBytes);
+      Point Q = tryGetQ();
+      if (Q == null) {
+         throw new RuntimeException("Invalid public key");
+      }
+      return Q;
+   }
+
+   /**
+    * Get the point of this key, or null if the key is not a valid point. The
+    * point at infinity is not a valid public key.
+    */
+   private Point tryGetQ() {
+      Point Q = _Q;
+      if (Q == null) {
+         Q = POINT_CACHE.tryGet(_pubKeyBytes);
+         if (Q == null || Q.isInfinity()) {
+            return null;
+         }
+         _Q = Q;
       }
-      return _Q;
+      return Q;
    }
 
    private static BigInteger[] decodeSignatureParameters(ByteReader reader) {
       try {
+         // Truncated signatures are rejected by checking the lengths up front,
+         // as garbage input is common and should not cost an exception
+         if (!reader.hasAvailable(4)) {
+            return null;
+         }
+
          // Read tag, must be 0x30
          if ((((int) reader.get()) & 0xFF) != 0x30) {
             return null;
@@ -102,6 +232,9 @@ public class PublicKey implements Serializable {
 
          // Read first length
          int length1 = ((int) reader.get()) & 0xFF;
+         if (!reader.hasAvailable(length1 + 2)) {
+            return null;
+         }
 
          // Read first byte array
          byte[] bytes1 = reader.getBytes(length1);
@@ -116,6 +249,9 @@ public class PublicKey implements Serializable {
 
          // Read second length
          int length2 = ((int) reader.get()) & 0xFF;
+         if (!reader.hasAvailable(length2)) {
+            return null;
+         }
 
          // Read second byte array
          byte[] bytes2 = reader.getBytes(length2);
@@ -146,30 +282,41 @@ public class PublicKey implements Serializable {
 
    private static boolean verifySignature(byte[] message, BigInteger r, BigInteger s, Point Q) {
       BigInteger n = Parameters.n;
-      BigInteger e = calculateE(n, message);
 
-      // r in the range [1,n-1]
-      if (r.compareTo(BigInteger.ONE) < 0 || r.compareTo(n) >= 0) {
+      // r and s in the range [1,n-1]
+      if (!isInRange(r, n) || !isInRange(s, n)) {
          return false;
       }
 
-      // s in the range [1,n-1]
-      if (s.compareTo(BigInteger.ONE) < 0 || s.compareTo(n) >= 0) {
-         return false;
-      }
+      int[] c = Secp256k1Scalar.create(s);
+      Secp256k1Scalar.invert(c, c);
+      return verifySignatureWithInverse(message, r, c, Q);
+   }
 
-      BigInteger c = s.modInverse(n);
+   private static boolean isInRange(BigInteger value, BigInteger n) {
+      return value.compareTo(BigInteger.ONE) >= 0 && value.compareTo(n) < 0;
+   }
 
-      BigInteger u1 = e.multiply(c).mod(n);
-      BigInteger u2 = r.multiply(c).mod(n);
+   private static boolean verifySignatureWithInverse(byte[] message, BigInteger r, int[] c, Point Q) {
+      BigInteger n = Parameters.n;
+      int[] u1 = Secp256k1Scalar.create(calculateE(n, message));
+      int[] u2 = Secp256k1Scalar.create(r);
+      Secp256k1Scalar.mul(u1, u1, c);
+      Secp256k1Scalar.mul(u2, u2, c);
 
       Point G = Parameters.G;
 
-      Point point = EcTools.sumOfTwoMultiplies(G, u1, Q, u2);
-
-      BigInteger v = point.getX().toBigInteger().mod(n);
+      JacobianPoint point = EcTools.sumOfTwoMultipliesJacobian(G, Secp256k1Scalar.toBigInteger(u1), Q,
+            Secp256k1Scalar.toBigInteger(u2));
 
-      return v.equals(r);
+      // The signature is valid if the x-coordinate of the point reduced
+      // modulo n equals r. As x is less than p, which is less than 2n, x is
+      // either r or r + n
+      if (point.hasAffineX(r)) {
+         return true;
+      }
+      BigInteger rPlusN = r.add(n);
+      return rPlusN.compareTo(Parameters.curve.getQ()) < 0 && point.hasAffineX(rPlusN);
    }
 
    private static BigInteger calculateE(BigInteger n, byte[] message) {
@@ -187,4 +334,48 @@ public class PublicKey implements Serializable {
       }
    }
 
+   /**
+    * Check that signatures checked against public keys that are not valid
+    * points are rejected rather than throwing
+    * 
+    * @return true iff the tests succeed
+    */
+   public static boolean testTestVectors() {
+      InMemoryPrivateKey key = new InMemoryPrivateKey(HashUtils.sha256(HexUtils.toBytes("00")), true);
+      byte[] data = HashUtils.sha256(HexUtils.toBytes("01"));
+      byte[] signature = key.makeStandardBitcoinSignature(data);
+
+      PublicKey[] invalidKeys = new PublicKey[] {
+            // x^3 + 7 has no square root for x = 5
+            new PublicKey(HexUtils.toBytes("020000000000000000000000000000000000000000000000000000000000000005")),
+            // x is not less than p
+            new PublicKey(HexUtils.toBytes("03ffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff")),
+            // The generator with y off by one
+            new PublicKey(HexUtils.toBytes("0479be667ef9dcbbac55a06295ce870b07029bfcdb2dce28d959f2815b16f81798"
+                  + "483ada7726a3c4655da4fbfc0e1108a8fd17b448a68554199c47d08ffb10d4b9")),
+            // Wrong length for the prefix
+            new PublicKey(HexUtils.toBytes("0479be667ef9dcbbac55a06295ce870b07029bfcdb2dce28d959f2815b16f81798")),
+            // The point at infinity
+            new PublicKey(HexUtils.toBytes("00")), new PublicKey(new byte[0]) };
+
+      if (!key.getPublicKey().verifyStandardBitcoinSignature(data, signature)) {
+         return false;
+      }
+      VerificationRequest[] requests = new VerificationRequest[invalidKeys.length + 1];
+      requests[0] = new VerificationRequest(key.getPublicKey(), data, signature);
+      for (int i = 0; i < invalidKeys.length; i++) {
+         // Twice, as the second time the failure comes from the cache
+         for (int j = 0; j < 2; j++) {
+            if (invalidKeys[i].verifyStandardBitcoinSignature(data, signature)) {
+               return false;
+            }
+         }
+         requests[i + 1] = new VerificationRequest(invalidKeys[i], data, signature);
+      }
+
+      // In a batch only the requests with invalid keys fail
+      BitSet valid = verifyStandardBitcoinSignatures(requests);
+      return valid.cardinality() == 1 && valid.get(0);
+   }
+
 }
@@ -10,6 +10,7 @@ import java.util.Set;
 
 import com.bccapi.bitlib.model.Address;
 import com.bccapi.bitlib.model.NetworkParameters;
+import com.bccapi.bitlib.util.HashUtils;
 
 public class PublicKeyRing {
    private List<Address> _addresses;
@@ -32,6 +33,24 @@ public class PublicKeyRing {
       _publicKeys.put(address, key);
    }
 
+   /**
+    * Add a number of public keys to the key ring. The addresses of the keys
+    * are hashed together, which is faster than adding the keys one by one.
+    */
+   public void addPublicKeys(PublicKey[] keys, NetworkParameters network) {
+      byte[][] pubkeys = new byte[keys.length][];
+      for (int i = 0; i < keys.length; i++) {
+         pubkeys[i] = keys[i].getPublicKeyBytes();
+      }
+      byte[][] hashes = HashUtils.addressHash(pubkeys);
+      for (int i = 0; i < keys.length; i++) {
+         Address address = Address.fromStandardBytes(hashes[i], network);
+         _addresses.add(address);
+         _addressSet.add(address);
+         _publicKeys.put(address, keys[i]);
+      }
+   }
+
    public PublicKey findPublicKeyByAddress(Address address) {
       return _publicKeys.get(address);
    }
@@ -0,0 +1,129 @@
+package com.bccapi.bitlib.crypto;
+
+import java.util.Arrays;
+
+import com.bccapi.bitlib.util.BitUtils;
+import com.bccapi.bitlib.util.HexUtils;
+
+/**
+ * Deterministic generation of ECDSA nonces for secp256k1 as specified in RFC
+ * 6979 section 3.2, using HMAC-SHA256.
+ * <p>
+ * The nonce is derived from the private key and the hash being signed, so
+ * signing needs no random source and the same hash always gets the same
+ * signature. An instance belongs to a single private key and precomputes the
+ * HMAC state of the first derivation step, which only depends on the key. It
+ * is immutable and may be shared between threads.
+ */
+public class Rfc6979NonceGenerator {
+
+   private static final byte[] ZERO = new byte[] { 0x00 };
+   private static final byte[] ONE = new byte[] { 0x01 };
+
+   // The initial value of V from step b
+   private static final byte[] INITIAL_V;
+   static {
+      INITIAL_V = new byte[32];
+      Arrays.fill(INITIAL_V, (byte) 0x01);
+   }
+
+   // HMAC with the initial key K = 0x00 0x00 ... 0x00 from step c
+   private static final Hmac INITIAL_K = Hmac.createSha256(new byte[32]);
+
+   private final byte[] _privateKey;
+   private final Hmac _stepD;
+
+   /**
+    * Create a nonce generator for a private key.
+    *
+    * @param privateKey
+    *           The private key as 32 bytes in big endian order
+    */
+   public Rfc6979NonceGenerator(byte[] privateKey) {
+      _privateKey = privateKey.clone();
+      // Step d hashes V || 0x00 || x || h1 with the initial K, and only h1
+      // depends on the message
+      _stepD = INITIAL_K.withPrefix(INITIAL_V, ZERO, _privateKey);
+   }
+
+   /**
+    * Start generating nonces for signing a hash.
+    *
+    * @param hash
+    *           The hash to sign reduced modulo n as 32 bytes in big endian
+    *           order, which is bits2octets(h1) in RFC 6979
+    * @return The sequence of candidate nonces for the hash
+    */
+   public Nonces start(byte[] hash) {
+      // Step d
+      Hmac k = Hmac.createSha256(_stepD.hmac(hash));
+      // Step e
+      byte[] v = k.hmac(INITIAL_V);
+      // Step f
+      k = Hmac.createSha256(k.hmac(v, ONE, _privateKey, hash));
+      // Step g
+      v = k.hmac(v);
+      return new Nonces(k, v);
+   }
+
+   /**
+    * The sequence of candidate nonces for a single hash. This class is not
+    * thread-safe.
+    */
+   public static class Nonces {
+
+      private Hmac _k;
+      private byte[] _v;
+      private boolean _first;
+
+      private Nonces(Hmac k, byte[] v) {
+         _k = k;
+         _v = v;
+         _first = true;
+      }
+
+      /**
+       * Get the next candidate nonce as 32 bytes in big endian order. The
+       * caller uses the first candidate that is in the range [1, n - 1] and
+       * gives a valid signature.
+       */
+      public byte[] next() {
+         if (!_first) {
+            // Step h.3, the previous candidate was rejected
+            _k = Hmac.createSha256(_k.hmac(_v, ZERO));
+            _v = _k.hmac(_v);
+         }
+         _first = false;
+         // Step h.2, a single HMAC output covers the 256 bits of n
+         _v = _k.hmac(_v);
+         return _v.clone();
+      }
+
+   }
+
+   /**
+    * Run test vectors for secp256k1 with SHA-256
+    *
+    * @return true iff the tests succeed
+    */
+   public static boolean testTestVectors() {
+      byte[] one = HexUtils.toBytes("0000000000000000000000000000000000000000000000000000000000000001");
+      byte[] nMinusOne = HexUtils.toBytes("fffffffffffffffffffffffffffffffebaaedce6af48a03bbfd25e8cd0364140");
+
+      // Private key 1, message "Satoshi Nakamoto"
+      byte[] hash = HexUtils.toBytes("a0dc65ffca799873cbea0ac274015b9526505daaaed385155425f7337704883e");
+      byte[] expected = HexUtils.toBytes("8f8a276c19f4149656b280621e358cce24f5f52542772691ee69063b74f15d15");
+      if (!BitUtils.areEqual(new Rfc6979NonceGenerator(one).start(hash).next(), expected)) {
+         return false;
+      }
+
+      // Private key n - 1, message "Satoshi Nakamoto"
+      expected = HexUtils.toBytes("33a19b60e25fb6f4435af53a3d42d493644827367e6453928554f43e49aa6f90");
+      if (!BitUtils.areEqual(new Rfc6979NonceGenerator(nMinusOne).start(hash).next(), expected)) {
+         return false;
+      }
+
+      return true;
+   }
+
+}
@@ -54,14 +54,15 @@ public abstract class GeneralDigest {
       }
 
       //
-      // process whole words.
+      // process whole words, leaving at least one byte for the remainder.
       //
-      while (len > xBuf.length) {
-         processWord(in, inOff);
+      if (len > xBuf.length) {
+         int words = (len - 1) / xBuf.length;
+         processWords(in, inOff, words);
 
-         inOff += xBuf.length;
-         len -= xBuf.length;
-         byteCount += xBuf.length;
+         inOff += words * xBuf.length;
+         len -= words * xBuf.length;
+         byteCount += words * xBuf.length;
       }
 
       //
@@ -107,6 +108,17 @@ public abstract class GeneralDigest {
 
    protected abstract void processWord(byte[] in, int inOff);
 
+   /**
+    * Process a number of whole words. Subclasses may override this to process
+    * them in bulk.
+    */
+   protected void processWords(byte[] in, int inOff, int count) {
+      for (int i = 0; i < count; i++) {
+         processWord(in, inOff);
+         inOff += xBuf.length;
+      }
+   }
+
    protected abstract void processLength(long bitLength);
 
    protected abstract void processBlock();
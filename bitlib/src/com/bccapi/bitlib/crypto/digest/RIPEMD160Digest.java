@@ -12,6 +12,12 @@ package com.bccapi.bitlib.crypto.digest;
 public class RIPEMD160Digest extends GeneralDigest {
    private static final int DIGEST_LENGTH = 20;
 
+   private static final int IV0 = 0x67452301;
+   private static final int IV1 = 0xefcdab89;
+   private static final int IV2 = 0x98badcfe;
+   private static final int IV3 = 0x10325476;
+   private static final int IV4 = 0xc3d2e1f0;
+
    private int H0, H1, H2, H3, H4; // IV's
 
    private int[] X = new int[16];
@@ -49,14 +55,33 @@ public class RIPEMD160Digest extends GeneralDigest {
    }
 
    protected void processWord(byte[] in, int inOff) {
-      X[xOff++] = (in[inOff] & 0xff) | ((in[inOff + 1] & 0xff) << 8) | ((in[inOff + 2] & 0xff) << 16)
-            | ((in[inOff + 3] & 0xff) << 24);
+      X[xOff++] = packWord(in, inOff);
 
       if (xOff == 16) {
          processBlock();
       }
    }
 
+   protected void processWords(byte[] in, int inOff, int count) {
+      // Fill the block buffer a block at a time rather than word by word
+      while (count > 0) {
+         int n = Math.min(count, 16 - xOff);
+         for (int i = 0; i < n; i++) {
+            X[xOff++] = packWord(in, inOff);
+            inOff += 4;
+         }
+         count -= n;
+         if (xOff == 16) {
+            processBlock();
+         }
+      }
+   }
+
+   private static int packWord(byte[] in, int inOff) {
+      return (in[inOff] & 0xff) | ((in[inOff + 1] & 0xff) << 8) | ((in[inOff + 2] & 0xff) << 16)
+            | ((in[inOff + 3] & 0xff) << 24);
+   }
+
    protected void processLength(long bitLength) {
       if (xOff > 14) {
          processBlock();
@@ -66,7 +91,7 @@ public class RIPEMD160Digest extends GeneralDigest {
       X[15] = (int) (bitLength >>> 32);
    }
 
-   private void unpackWord(int word, byte[] out, int outOff) {
+   private static void unpackWord(int word, byte[] out, int outOff) {
       out[outOff] = (byte) word;
       out[outOff + 1] = (byte) (word >>> 8);
       out[outOff + 2] = (byte) (word >>> 16);
@@ -93,11 +118,11 @@ public class RIPEMD160Digest extends GeneralDigest {
    public void reset() {
       super.reset();
 
-      H0 = 0x67452301;
-      H1 = 0xefcdab89;
-      H2 = 0x98badcfe;
-      H3 = 0x10325476;
-      H4 = 0xc3d2e1f0;
+      H0 = IV0;
+      H1 = IV1;
+      H2 = IV2;
+      H3 = IV3;
+      H4 = IV4;
 
       xOff = 0;
 
@@ -106,10 +131,412 @@ public class RIPEMD160Digest extends GeneralDigest {
       }
    }
 
+   /**
+    * Calculate the RIPEMD160 of exactly 32 bytes, such as a SHA-256 hash. This
+    * is the input of every address hash. The 32 bytes and the padding fit in
+    * a single block, so the rounds are run straight from the input with the
+    * padding words folded in as constants and without any buffering.
+    *
+    * @param in
+    *           The buffer holding the 32 bytes to hash
+    * @param inOff
+    *           The offset of the bytes to hash
+    * @param out
+    *           The buffer to write the 20 byte hash to
+    * @param outOff
+    *           The offset to write the hash at
+    */
+   public static void hash32(byte[] in, int inOff, byte[] out, int outOff) {
+      int x0 = packWord(in, inOff);
+      int x1 = packWord(in, inOff + 4);
+      int x2 = packWord(in, inOff + 8);
+      int x3 = packWord(in, inOff + 12);
+      int x4 = packWord(in, inOff + 16);
+      int x5 = packWord(in, inOff + 20);
+      int x6 = packWord(in, inOff + 24);
+      int x7 = packWord(in, inOff + 28);
+      // Word 8 is the 0x80 padding byte, word 14 is the length of 256 bits
+      // and the other words are zero
+
+      int a, aa;
+      int b, bb;
+      int c, cc;
+      int d, dd;
+      int e, ee;
+
+      a = aa = IV0;
+      b = bb = IV1;
+      c = cc = IV2;
+      d = dd = IV3;
+      e = ee = IV4;
+
+      //
+      // Rounds 1 - 16
+      //
+      // left
+      a = RL(a + f1(b, c, d) + x0, 11) + e;
+      c = RL(c, 10);
+      e = RL(e + f1(a, b, c) + x1, 14) + d;
+      b = RL(b, 10);
+      d = RL(d + f1(e, a, b) + x2, 15) + c;
+      a = RL(a, 10);
+      c = RL(c + f1(d, e, a) + x3, 12) + b;
+      e = RL(e, 10);
+      b = RL(b + f1(c, d, e) + x4, 5) + a;
+      d = RL(d, 10);
+      a = RL(a + f1(b, c, d) + x5, 8) + e;
+      c = RL(c, 10);
+      e = RL(e + f1(a, b, c) + x6, 7) + d;
+      b = RL(b, 10);
+      d = RL(d + f1(e, a, b) + x7, 9) + c;
+      a = RL(a, 10);
+      c = RL(c + f1(d, e, a) + 0x80, 11) + b;
+      e = RL(e, 10);
+      b = RL(b + f1(c, d, e), 13) + a;
+      d = RL(d, 10);
+      a = RL(a + f1(b, c, d), 14) + e;
+      c = RL(c, 10);
+      e = RL(e + f1(a, b, c), 15) + d;
+      b = RL(b, 10);
+      d = RL(d + f1(e, a, b), 6) + c;
+      a = RL(a, 10);
+      c = RL(c + f1(d, e, a), 7) + b;
+      e = RL(e, 10);
+      b = RL(b + f1(c, d, e) + 256, 9) + a;
+      d = RL(d, 10);
+      a = RL(a + f1(b, c, d), 8) + e;
+      c = RL(c, 10);
+
+      // right
+      aa = RL(aa + f5(bb, cc, dd) + x5 + 0x50a28be6, 8) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f5(aa, bb, cc) + 256 + 0x50a28be6, 9) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f5(ee, aa, bb) + x7 + 0x50a28be6, 9) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f5(dd, ee, aa) + x0 + 0x50a28be6, 11) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f5(cc, dd, ee)  + 0x50a28be6, 13) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f5(bb, cc, dd) + x2 + 0x50a28be6, 15) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f5(aa, bb, cc)  + 0x50a28be6, 15) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f5(ee, aa, bb) + x4 + 0x50a28be6, 5) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f5(dd, ee, aa)  + 0x50a28be6, 7) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f5(cc, dd, ee) + x6 + 0x50a28be6, 7) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f5(bb, cc, dd)  + 0x50a28be6, 8) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f5(aa, bb, cc) + 0x80 + 0x50a28be6, 11) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f5(ee, aa, bb) + x1 + 0x50a28be6, 14) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f5(dd, ee, aa)  + 0x50a28be6, 14) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f5(cc, dd, ee) + x3 + 0x50a28be6, 12) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f5(bb, cc, dd)  + 0x50a28be6, 6) + ee;
+      cc = RL(cc, 10);
+
+      //
+      // Rounds 16-31
+      //
+      // left
+      e = RL(e + f2(a, b, c) + x7 + 0x5a827999, 7) + d;
+      b = RL(b, 10);
+      d = RL(d + f2(e, a, b) + x4 + 0x5a827999, 6) + c;
+      a = RL(a, 10);
+      c = RL(c + f2(d, e, a)  + 0x5a827999, 8) + b;
+      e = RL(e, 10);
+      b = RL(b + f2(c, d, e) + x1 + 0x5a827999, 13) + a;
+      d = RL(d, 10);
+      a = RL(a + f2(b, c, d)  + 0x5a827999, 11) + e;
+      c = RL(c, 10);
+      e = RL(e + f2(a, b, c) + x6 + 0x5a827999, 9) + d;
+      b = RL(b, 10);
+      d = RL(d + f2(e, a, b)  + 0x5a827999, 7) + c;
+      a = RL(a, 10);
+      c = RL(c + f2(d, e, a) + x3 + 0x5a827999, 15) + b;
+      e = RL(e, 10);
+      b = RL(b + f2(c, d, e)  + 0x5a827999, 7) + a;
+      d = RL(d, 10);
+      a = RL(a + f2(b, c, d) + x0 + 0x5a827999, 12) + e;
+      c = RL(c, 10);
+      e = RL(e + f2(a, b, c)  + 0x5a827999, 15) + d;
+      b = RL(b, 10);
+      d = RL(d + f2(e, a, b) + x5 + 0x5a827999, 9) + c;
+      a = RL(a, 10);
+      c = RL(c + f2(d, e, a) + x2 + 0x5a827999, 11) + b;
+      e = RL(e, 10);
+      b = RL(b + f2(c, d, e) + 256 + 0x5a827999, 7) + a;
+      d = RL(d, 10);
+      a = RL(a + f2(b, c, d)  + 0x5a827999, 13) + e;
+      c = RL(c, 10);
+      e = RL(e + f2(a, b, c) + 0x80 + 0x5a827999, 12) + d;
+      b = RL(b, 10);
+
+      // right
+      ee = RL(ee + f4(aa, bb, cc) + x6 + 0x5c4dd124, 9) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f4(ee, aa, bb)  + 0x5c4dd124, 13) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f4(dd, ee, aa) + x3 + 0x5c4dd124, 15) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f4(cc, dd, ee) + x7 + 0x5c4dd124, 7) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f4(bb, cc, dd) + x0 + 0x5c4dd124, 12) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f4(aa, bb, cc)  + 0x5c4dd124, 8) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f4(ee, aa, bb) + x5 + 0x5c4dd124, 9) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f4(dd, ee, aa)  + 0x5c4dd124, 11) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f4(cc, dd, ee) + 256 + 0x5c4dd124, 7) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f4(bb, cc, dd)  + 0x5c4dd124, 7) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f4(aa, bb, cc) + 0x80 + 0x5c4dd124, 12) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f4(ee, aa, bb)  + 0x5c4dd124, 7) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f4(dd, ee, aa) + x4 + 0x5c4dd124, 6) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f4(cc, dd, ee)  + 0x5c4dd124, 15) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f4(bb, cc, dd) + x1 + 0x5c4dd124, 13) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f4(aa, bb, cc) + x2 + 0x5c4dd124, 11) + dd;
+      bb = RL(bb, 10);
+
+      //
+      // Rounds 32-47
+      //
+      // left
+      d = RL(d + f3(e, a, b) + x3 + 0x6ed9eba1, 11) + c;
+      a = RL(a, 10);
+      c = RL(c + f3(d, e, a)  + 0x6ed9eba1, 13) + b;
+      e = RL(e, 10);
+      b = RL(b + f3(c, d, e) + 256 + 0x6ed9eba1, 6) + a;
+      d = RL(d, 10);
+      a = RL(a + f3(b, c, d) + x4 + 0x6ed9eba1, 7) + e;
+      c = RL(c, 10);
+      e = RL(e + f3(a, b, c)  + 0x6ed9eba1, 14) + d;
+      b = RL(b, 10);
+      d = RL(d + f3(e, a, b)  + 0x6ed9eba1, 9) + c;
+      a = RL(a, 10);
+      c = RL(c + f3(d, e, a) + 0x80 + 0x6ed9eba1, 13) + b;
+      e = RL(e, 10);
+      b = RL(b + f3(c, d, e) + x1 + 0x6ed9eba1, 15) + a;
+      d = RL(d, 10);
+      a = RL(a + f3(b, c, d) + x2 + 0x6ed9eba1, 14) + e;
+      c = RL(c, 10);
+      e = RL(e + f3(a, b, c) + x7 + 0x6ed9eba1, 8) + d;
+      b = RL(b, 10);
+      d = RL(d + f3(e, a, b) + x0 + 0x6ed9eba1, 13) + c;
+      a = RL(a, 10);
+      c = RL(c + f3(d, e, a) + x6 + 0x6ed9eba1, 6) + b;
+      e = RL(e, 10);
+      b = RL(b + f3(c, d, e)  + 0x6ed9eba1, 5) + a;
+      d = RL(d, 10);
+      a = RL(a + f3(b, c, d)  + 0x6ed9eba1, 12) + e;
+      c = RL(c, 10);
+      e = RL(e + f3(a, b, c) + x5 + 0x6ed9eba1, 7) + d;
+      b = RL(b, 10);
+      d = RL(d + f3(e, a, b)  + 0x6ed9eba1, 5) + c;
+      a = RL(a, 10);
+
+      // right
+      dd = RL(dd + f3(ee, aa, bb)  + 0x6d703ef3, 9) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f3(dd, ee, aa) + x5 + 0x6d703ef3, 7) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f3(cc, dd, ee) + x1 + 0x6d703ef3, 15) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f3(bb, cc, dd) + x3 + 0x6d703ef3, 11) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f3(aa, bb, cc) + x7 + 0x6d703ef3, 8) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f3(ee, aa, bb) + 256 + 0x6d703ef3, 6) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f3(dd, ee, aa) + x6 + 0x6d703ef3, 6) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f3(cc, dd, ee)  + 0x6d703ef3, 14) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f3(bb, cc, dd)  + 0x6d703ef3, 12) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f3(aa, bb, cc) + 0x80 + 0x6d703ef3, 13) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f3(ee, aa, bb)  + 0x6d703ef3, 5) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f3(dd, ee, aa) + x2 + 0x6d703ef3, 14) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f3(cc, dd, ee)  + 0x6d703ef3, 13) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f3(bb, cc, dd) + x0 + 0x6d703ef3, 13) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f3(aa, bb, cc) + x4 + 0x6d703ef3, 7) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f3(ee, aa, bb)  + 0x6d703ef3, 5) + cc;
+      aa = RL(aa, 10);
+
+      //
+      // Rounds 48-63
+      //
+      // left
+      c = RL(c + f4(d, e, a) + x1 + 0x8f1bbcdc, 11) + b;
+      e = RL(e, 10);
+      b = RL(b + f4(c, d, e)  + 0x8f1bbcdc, 12) + a;
+      d = RL(d, 10);
+      a = RL(a + f4(b, c, d)  + 0x8f1bbcdc, 14) + e;
+      c = RL(c, 10);
+      e = RL(e + f4(a, b, c)  + 0x8f1bbcdc, 15) + d;
+      b = RL(b, 10);
+      d = RL(d + f4(e, a, b) + x0 + 0x8f1bbcdc, 14) + c;
+      a = RL(a, 10);
+      c = RL(c + f4(d, e, a) + 0x80 + 0x8f1bbcdc, 15) + b;
+      e = RL(e, 10);
+      b = RL(b + f4(c, d, e)  + 0x8f1bbcdc, 9) + a;
+      d = RL(d, 10);
+      a = RL(a + f4(b, c, d) + x4 + 0x8f1bbcdc, 8) + e;
+      c = RL(c, 10);
+      e = RL(e + f4(a, b, c)  + 0x8f1bbcdc, 9) + d;
+      b = RL(b, 10);
+      d = RL(d + f4(e, a, b) + x3 + 0x8f1bbcdc, 14) + c;
+      a = RL(a, 10);
+      c = RL(c + f4(d, e, a) + x7 + 0x8f1bbcdc, 5) + b;
+      e = RL(e, 10);
+      b = RL(b + f4(c, d, e)  + 0x8f1bbcdc, 6) + a;
+      d = RL(d, 10);
+      a = RL(a + f4(b, c, d) + 256 + 0x8f1bbcdc, 8) + e;
+      c = RL(c, 10);
+      e = RL(e + f4(a, b, c) + x5 + 0x8f1bbcdc, 6) + d;
+      b = RL(b, 10);
+      d = RL(d + f4(e, a, b) + x6 + 0x8f1bbcdc, 5) + c;
+      a = RL(a, 10);
+      c = RL(c + f4(d, e, a) + x2 + 0x8f1bbcdc, 12) + b;
+      e = RL(e, 10);
+
+      // right
+      cc = RL(cc + f2(dd, ee, aa) + 0x80 + 0x7a6d76e9, 15) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f2(cc, dd, ee) + x6 + 0x7a6d76e9, 5) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f2(bb, cc, dd) + x4 + 0x7a6d76e9, 8) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f2(aa, bb, cc) + x1 + 0x7a6d76e9, 11) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f2(ee, aa, bb) + x3 + 0x7a6d76e9, 14) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f2(dd, ee, aa)  + 0x7a6d76e9, 14) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f2(cc, dd, ee)  + 0x7a6d76e9, 6) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f2(bb, cc, dd) + x0 + 0x7a6d76e9, 14) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f2(aa, bb, cc) + x5 + 0x7a6d76e9, 6) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f2(ee, aa, bb)  + 0x7a6d76e9, 9) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f2(dd, ee, aa) + x2 + 0x7a6d76e9, 12) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f2(cc, dd, ee)  + 0x7a6d76e9, 9) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f2(bb, cc, dd)  + 0x7a6d76e9, 12) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f2(aa, bb, cc) + x7 + 0x7a6d76e9, 5) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f2(ee, aa, bb)  + 0x7a6d76e9, 15) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f2(dd, ee, aa) + 256 + 0x7a6d76e9, 8) + bb;
+      ee = RL(ee, 10);
+
+      //
+      // Rounds 64-79
+      //
+      // left
+      b = RL(b + f5(c, d, e) + x4 + 0xa953fd4e, 9) + a;
+      d = RL(d, 10);
+      a = RL(a + f5(b, c, d) + x0 + 0xa953fd4e, 15) + e;
+      c = RL(c, 10);
+      e = RL(e + f5(a, b, c) + x5 + 0xa953fd4e, 5) + d;
+      b = RL(b, 10);
+      d = RL(d + f5(e, a, b)  + 0xa953fd4e, 11) + c;
+      a = RL(a, 10);
+      c = RL(c + f5(d, e, a) + x7 + 0xa953fd4e, 6) + b;
+      e = RL(e, 10);
+      b = RL(b + f5(c, d, e)  + 0xa953fd4e, 8) + a;
+      d = RL(d, 10);
+      a = RL(a + f5(b, c, d) + x2 + 0xa953fd4e, 13) + e;
+      c = RL(c, 10);
+      e = RL(e + f5(a, b, c)  + 0xa953fd4e, 12) + d;
+      b = RL(b, 10);
+      d = RL(d + f5(e, a, b) + 256 + 0xa953fd4e, 5) + c;
+      a = RL(a, 10);
+      c = RL(c + f5(d, e, a) + x1 + 0xa953fd4e, 12) + b;
+      e = RL(e, 10);
+      b = RL(b + f5(c, d, e) + x3 + 0xa953fd4e, 13) + a;
+      d = RL(d, 10);
+      a = RL(a + f5(b, c, d) + 0x80 + 0xa953fd4e, 14) + e;
+      c = RL(c, 10);
+      e = RL(e + f5(a, b, c)  + 0xa953fd4e, 11) + d;
+      b = RL(b, 10);
+      d = RL(d + f5(e, a, b) + x6 + 0xa953fd4e, 8) + c;
+      a = RL(a, 10);
+      c = RL(c + f5(d, e, a)  + 0xa953fd4e, 5) + b;
+      e = RL(e, 10);
+      b = RL(b + f5(c, d, e)  + 0xa953fd4e, 6) + a;
+      d = RL(d, 10);
+
+      // right
+      bb = RL(bb + f1(cc, dd, ee), 8) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f1(bb, cc, dd), 5) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f1(aa, bb, cc), 12) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f1(ee, aa, bb) + x4, 9) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f1(dd, ee, aa) + x1, 12) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f1(cc, dd, ee) + x5, 5) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f1(bb, cc, dd) + 0x80, 14) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f1(aa, bb, cc) + x7, 6) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f1(ee, aa, bb) + x6, 8) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f1(dd, ee, aa) + x2, 13) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f1(cc, dd, ee), 6) + aa;
+      dd = RL(dd, 10);
+      aa = RL(aa + f1(bb, cc, dd) + 256, 5) + ee;
+      cc = RL(cc, 10);
+      ee = RL(ee + f1(aa, bb, cc) + x0, 15) + dd;
+      bb = RL(bb, 10);
+      dd = RL(dd + f1(ee, aa, bb) + x3, 13) + cc;
+      aa = RL(aa, 10);
+      cc = RL(cc + f1(dd, ee, aa), 11) + bb;
+      ee = RL(ee, 10);
+      bb = RL(bb + f1(cc, dd, ee), 11) + aa;
+      dd = RL(dd, 10);
+
+      dd += c + IV1;
+      unpackWord(dd, out, outOff);
+      unpackWord(IV2 + d + ee, out, outOff + 4);
+      unpackWord(IV3 + e + aa, out, outOff + 8);
+      unpackWord(IV4 + a + bb, out, outOff + 12);
+      unpackWord(IV0 + b + cc, out, outOff + 16);
+   }
+
    /*
     * rotate int x left n bits.
     */
-   private int RL(int x, int n) {
+   private static int RL(int x, int n) {
       return (x << n) | (x >>> (32 - n));
    }
 
@@ -120,35 +547,35 @@ public class RIPEMD160Digest extends GeneralDigest {
    /*
     * rounds 0-15
     */
-   private int f1(int x, int y, int z) {
+   private static int f1(int x, int y, int z) {
       return x ^ y ^ z;
    }
 
    /*
     * rounds 16-31
     */
-   private int f2(int x, int y, int z) {
+   private static int f2(int x, int y, int z) {
       return (x & y) | (~x & z);
    }
 
    /*
     * rounds 32-47
     */
-   private int f3(int x, int y, int z) {
+   private static int f3(int x, int y, int z) {
       return (x | ~y) ^ z;
    }
 
    /*
     * rounds 48-63
     */
-   private int f4(int x, int y, int z) {
+   private static int f4(int x, int y, int z) {
       return (x & z) | (y & ~z);
    }
 
    /*
     * rounds 64-79
     */
-   private int f5(int x, int y, int z) {
+   private static int f5(int x, int y, int z) {
       return x ^ (y | ~z);
    }
 
@@ -0,0 +1,187 @@
+package com.bccapi.bitlib.crypto.digest;
+
+/**
+ * RIPEMD160 of many independent 32 byte inputs, such as the SHA-256 hashes of
+ * public keys, computed in lockstep.
+ * <p>
+ * Every word of the state is kept as an array with one element per input, and
+ * each step of the compression function is a loop over the inputs. These
+ * loops have no dependencies between iterations, so the JIT compiles them to
+ * SIMD instructions where the platform has them. The inputs are padded
+ * exactly like {@link RIPEMD160Digest#hash32(byte[], int, byte[], int)} does.
+ * <p>
+ * An instance holds the working arrays and is not thread-safe.
+ */
+public class RIPEMD160Lanes {
+
+   /**
+    * The number of inputs hashed together. Sixteen 32 bit lanes fill a 512 bit
+    * vector register, and fewer lanes are too short a loop for the JIT to
+    * vectorize.
+    */
+   public static final int LANES = 16;
+
+   private static final int INPUT_LENGTH = 32;
+   private static final int DIGEST_LENGTH = 20;
+
+   private static final int[] IV = { 0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476, 0xc3d2e1f0 };
+
+   // Message word, rotation and constant of every step of the left line
+   private static final int[] R_LEFT = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 7, 4, 13, 1, 10, 6,
+         15, 3, 12, 0, 9, 5, 2, 14, 11, 8, 3, 10, 14, 4, 9, 15, 8, 1, 2, 7, 0, 6, 13, 11, 5, 12, 1, 9, 11, 10, 0, 8, 12,
+         4, 13, 3, 7, 15, 14, 5, 6, 2, 4, 0, 5, 9, 7, 12, 2, 10, 14, 1, 3, 8, 11, 6, 15, 13 };
+   private static final int[] S_LEFT = { 11, 14, 15, 12, 5, 8, 7, 9, 11, 13, 14, 15, 6, 7, 9, 8, 7, 6, 8, 13, 11, 9,
+         7, 15, 7, 12, 15, 9, 11, 7, 13, 12, 11, 13, 6, 7, 14, 9, 13, 15, 14, 8, 13, 6, 5, 12, 7, 5, 11, 12, 14, 15, 14,
+         15, 9, 8, 9, 14, 5, 6, 8, 6, 5, 12, 9, 15, 5, 11, 6, 8, 13, 12, 5, 12, 13, 14, 11, 8, 5, 6 };
+   private static final int[] K_LEFT = { 0x00000000, 0x5a827999, 0x6ed9eba1, 0x8f1bbcdc, 0xa953fd4e };
+
+   // Message word, rotation and constant of every step of the right line
+   private static final int[] R_RIGHT = { 5, 14, 7, 0, 9, 2, 11, 4, 13, 6, 15, 8, 1, 10, 3, 12, 6, 11, 3, 7, 0, 13,
+         5, 10, 14, 15, 8, 12, 4, 9, 1, 2, 15, 5, 1, 3, 7, 14, 6, 9, 11, 8, 12, 2, 10, 0, 4, 13, 8, 6, 4, 1, 3, 11, 15,
+         0, 5, 12, 2, 13, 9, 7, 10, 14, 12, 15, 10, 4, 1, 5, 8, 7, 6, 2, 13, 14, 0, 3, 9, 11 };
+   private static final int[] S_RIGHT = { 8, 9, 9, 11, 13, 15, 15, 5, 7, 7, 8, 11, 14, 14, 12, 6, 9, 13, 15, 7, 12,
+         8, 9, 11, 7, 7, 12, 7, 6, 15, 13, 11, 9, 7, 15, 11, 8, 6, 6, 14, 12, 13, 5, 14, 13, 13, 7, 5, 15, 5, 8, 11, 14,
+         14, 6, 14, 6, 9, 12, 9, 12, 5, 15, 8, 8, 5, 12, 9, 12, 5, 14, 6, 8, 13, 6, 5, 15, 13, 11, 11 };
+   private static final int[] K_RIGHT = { 0x50a28be6, 0x5c4dd124, 0x6d703ef3, 0x7a6d76e9, 0x00000000 };
+
+   // The message words, X[word][lane]
+   private final int[][] X;
+   // The state of the left line followed by the state of the right line
+   private final int[][] _state;
+
+   public RIPEMD160Lanes() {
+      X = new int[16][LANES];
+      _state = new int[10][LANES];
+   }
+
+   /**
+    * Calculate the RIPEMD160 of a number of 32 byte inputs.
+    *
+    * @param in
+    *           The buffer holding the inputs one after the other
+    * @param inOff
+    *           The offset of the first input
+    * @param count
+    *           The number of inputs
+    * @param out
+    *           The buffer to write the 20 byte hashes to one after the other
+    * @param outOff
+    *           The offset to write the first hash at
+    */
+   public void hash32(byte[] in, int inOff, int count, byte[] out, int outOff) {
+      while (count > 0) {
+         int n = Math.min(count, LANES);
+         hashLanes(in, inOff, n, out, outOff);
+         inOff += n * INPUT_LENGTH;
+         outOff += n * DIGEST_LENGTH;
+         count -= n;
+      }
+   }
+
+   private void hashLanes(byte[] in, int inOff, int n, byte[] out, int outOff) {
+      // Load the inputs and the padding. Unused lanes hash whatever they hold
+      // and are not written out.
+      for (int lane = 0; lane < n; lane++) {
+         int offset = inOff + lane * INPUT_LENGTH;
+         for (int word = 0; word < 8; word++) {
+            X[word][lane] = packWord(in, offset + word * 4);
+         }
+         X[8][lane] = 0x80;
+         X[14][lane] = INPUT_LENGTH * 8;
+      }
+      for (int i = 0; i < 5; i++) {
+         int[] left = _state[i];
+         int[] right = _state[5 + i];
+         for (int lane = 0; lane < LANES; lane++) {
+            left[lane] = IV[i];
+            right[lane] = IV[i];
+         }
+      }
+
+      line(_state[0], _state[1], _state[2], _state[3], _state[4], R_LEFT, S_LEFT, K_LEFT, true);
+      line(_state[5], _state[6], _state[7], _state[8], _state[9], R_RIGHT, S_RIGHT, K_RIGHT, false);
+
+      // After 80 steps every state word is back in its own array
+      int[] a = _state[0], b = _state[1], c = _state[2], d = _state[3], e = _state[4];
+      int[] aa = _state[5], bb = _state[6], cc = _state[7], dd = _state[8], ee = _state[9];
+      for (int lane = 0; lane < n; lane++) {
+         int offset = outOff + lane * DIGEST_LENGTH;
+         unpackWord(IV[1] + c[lane] + dd[lane], out, offset);
+         unpackWord(IV[2] + d[lane] + ee[lane], out, offset + 4);
+         unpackWord(IV[3] + e[lane] + aa[lane], out, offset + 8);
+         unpackWord(IV[4] + a[lane] + bb[lane], out, offset + 12);
+         unpackWord(IV[0] + b[lane] + cc[lane], out, offset + 16);
+      }
+   }
+
+   /**
+    * Run the 80 steps of one line. The left line uses the functions f1 to f5
+    * in order, the right line uses them in reverse order.
+    */
+   private void line(int[] a, int[] b, int[] c, int[] d, int[] e, int[] r, int[] s, int[] k, boolean left) {
+      for (int step = 0; step < 80; step++) {
+         int round = step >> 4;
+         int f = left ? round : 4 - round;
+         int[] x = X[r[step]];
+         int rotation = s[step];
+         int constant = k[round];
+         switch (f) {
+         case 0:
+            for (int lane = 0; lane < LANES; lane++) {
+               int t = a[lane] + (b[lane] ^ c[lane] ^ d[lane]) + x[lane] + constant;
+               a[lane] = ((t << rotation) | (t >>> (32 - rotation))) + e[lane];
+               c[lane] = (c[lane] << 10) | (c[lane] >>> 22);
+            }
+            break;
+         case 1:
+            for (int lane = 0; lane < LANES; lane++) {
+               int t = a[lane] + ((b[lane] & c[lane]) | (~b[lane] & d[lane])) + x[lane] + constant;
+               a[lane] = ((t << rotation) | (t >>> (32 - rotation))) + e[lane];
+               c[lane] = (c[lane] << 10) | (c[lane] >>> 22);
+            }
+            break;
+         case 2:
+            for (int lane = 0; lane < LANES; lane++) {
+               int t = a[lane] + ((b[lane] | ~c[lane]) ^ d[lane]) + x[lane] + constant;
+               a[lane] = ((t << rotation) | (t >>> (32 - rotation))) + e[lane];
+               c[lane] = (c[lane] << 10) | (c[lane] >>> 22);
+            }
+            break;
+         case 3:
+            for (int lane = 0; lane < LANES; lane++) {
+               int t = a[lane] + ((b[lane] & d[lane]) | (c[lane] & ~d[lane])) + x[lane] + constant;
+               a[lane] = ((t << rotation) | (t >>> (32 - rotation))) + e[lane];
+               c[lane] = (c[lane] << 10) | (c[lane] >>> 22);
+            }
+            break;
+         default:
+            for (int lane = 0; lane < LANES; lane++) {
+               int t = a[lane] + (b[lane] ^ (c[lane] | ~d[lane])) + x[lane] + constant;
+               a[lane] = ((t << rotation) | (t >>> (32 - rotation))) + e[lane];
+               c[lane] = (c[lane] << 10) | (c[lane] >>> 22);
+            }
+            break;
+         }
+         // The new a is the old e, and the other words move down one place
+         int[] t = e;
+         e = d;
+         d = c;
+         c = b;
+         b = a;
+         a = t;
+      }
+   }
+
+   private static int packWord(byte[] in, int inOff) {
+      return (in[inOff] & 0xff) | ((in[inOff + 1] & 0xff) << 8) | ((in[inOff + 2] & 0xff) << 16)
+            | ((in[inOff + 3] & 0xff) << 24);
+   }
+
+   private static void unpackWord(int word, byte[] out, int outOff) {
+      out[outOff] = (byte) word;
+      out[outOff + 1] = (byte) (word >>> 8);
+      out[outOff + 2] = (byte) (word >>> 16);
+      out[outOff + 3] = (byte) (word >>> 24);
+   }
+
+}
@@ -5,6 +5,7 @@
 package com.bccapi.bitlib.crypto.ec;
 
 import java.math.BigInteger;
+import java.util.Random;
 
 /**
  * Various tools for elliptic curves
@@ -41,51 +42,495 @@ public class EcTools {
    }
 
    /**
-    * Multiply a point with a big integer
+    * Decode a point on secp256k1 from its SEC 1 encoding and validate it.
+    * <p>
+    * Unlike {@link Curve#decodePoint(byte[])} this checks the length of the
+    * encoding, that the coordinates are less than p, and that the point is on
+    * the curve. The square root needed for compressed points is calculated
+    * with {@link Secp256k1Field}.
+    *
+    * @throws RuntimeException
+    *            If the encoding is invalid or the point is not on the curve
+    */
+   public static Point decodePoint(byte[] encoded) {
+      Curve curve = Parameters.curve;
+      switch (encoded.length == 0 ? -1 : encoded[0]) {
+      case 0x00:
+         if (encoded.length != 1) {
+            throw new RuntimeException("Invalid encoding length");
+         }
+         return curve.getInfinity();
+      case 0x02:
+      case 0x03: {
+         if (encoded.length != 33) {
+            throw new RuntimeException("Invalid encoding length");
+         }
+         BigInteger x = decodeCoordinate(encoded, 1);
+         int[] y = curveRightSide(x);
+         if (!Secp256k1Field.sqrt(y, y)) {
+            throw new RuntimeException("Invalid compression");
+         }
+         if (Secp256k1Field.isOdd(y) != ((encoded[0] & 1) == 1)) {
+            Secp256k1Field.negate(y, y);
+         }
+         return new Point(curve, curve.fromBigInteger(x), curve.fromBigInteger(Secp256k1Field.toBigInteger(y)), true);
+      }
+      case 0x04:
+      case 0x06:
+      case 0x07: {
+         if (encoded.length != 65) {
+            throw new RuntimeException("Invalid encoding length");
+         }
+         BigInteger x = decodeCoordinate(encoded, 1);
+         BigInteger y = decodeCoordinate(encoded, 33);
+         int[] ySquared = Secp256k1Field.create(y);
+         Secp256k1Field.sqr(ySquared, ySquared);
+         if (!Secp256k1Field.equals(ySquared, curveRightSide(x))) {
+            throw new RuntimeException("Point is not on the curve");
+         }
+         // The hybrid encodings also carry the parity of y
+         if (encoded[0] != 0x04 && y.testBit(0) != ((encoded[0] & 1) == 1)) {
+            throw new RuntimeException("Invalid hybrid encoding");
+         }
+         return new Point(curve, curve.fromBigInteger(x), curve.fromBigInteger(y));
+      }
+      default:
+         throw new RuntimeException(encoded.length == 0 ? "Empty encoding" : "Invalid encoding 0x"
+               + Integer.toString(encoded[0] & 0xFF, 16));
+      }
+   }
+
+   private static BigInteger decodeCoordinate(byte[] encoded, int offset) {
+      byte[] bytes = new byte[32];
+      System.arraycopy(encoded, offset, bytes, 0, 32);
+      BigInteger value = new BigInteger(1, bytes);
+      if (value.compareTo(Secp256k1Field.P) >= 0) {
+         throw new RuntimeException("Invalid coordinate");
+      }
+      return value;
+   }
+
+   /**
+    * Calculate x^3 + 7
+    */
+   private static int[] curveRightSide(BigInteger x) {
+      int[] r = Secp256k1Field.create(x);
+      int[] t = Secp256k1Field.create();
+      Secp256k1Field.sqr(t, r);
+      Secp256k1Field.mul(r, r, t);
+      Secp256k1Field.setInt(t, 7);
+      Secp256k1Field.add(r, r, t);
+      return r;
+   }
+
+   /**
+    * Multiply a point with a big integer.
+    * <p>
+    * The multiplier is split into two halves using the secp256k1 endomorphism,
+    * see {@link Secp256k1Endomorphism}, and both halves are recoded in
+    * width-w NAF form. The two multiplications are then done in a single
+    * double and add loop over 129 bits in Jacobian coordinates, and a single
+    * field inversion converts the result back to affine coordinates.
     */
    public static Point multiply(Point p, BigInteger k) {
-      BigInteger e = k;
-      BigInteger h = e.multiply(BigInteger.valueOf(3));
+      if (p.isInfinity()) {
+         return p;
+      }
+      int[] table = oddMultiples(p, WINDOW);
+      int[] lambdaTable = table.clone();
+      Secp256k1Endomorphism.applyToTable(lambdaTable, JacobianPoint.JACOBIAN_SIZE);
+      BigInteger[] split = Secp256k1Endomorphism.splitScalar(reduce(k));
+
+      JacobianPoint R = new JacobianPoint();
+      int[][] tables = new int[][] { table, lambdaTable };
+      int[][] wnafs = new int[][] { wnaf(split[0], WINDOW), wnaf(split[1], WINDOW) };
+      interleave(R, tables, new boolean[] { false, false }, wnafs);
+      return R.toAffine(p.isCompressed());
+   }
+
+   /**
+    * Multiply the generator point {@link Parameters#G} with a big integer.
+    * <p>
+    * This uses a precomputed table holding j * 16^i * G for every 4-bit window
+    * i of the multiplier and every window value j. The multiplication is then
+    * done with one point addition per window and no doublings. The table is
+    * built the first time it is needed and is immutable after that.
+    */
+   public static Point multiplyG(BigInteger k) {
+      JacobianPoint R = new JacobianPoint();
+      multiplyG(R, k);
+      return R.toAffine(false);
+   }
+
+   /**
+    * Multiply the generator point {@link Parameters#G} with several big
+    * integers, as when deriving many public keys at once. This works like
+    * {@link #multiplyG(BigInteger)}, but the results are converted to affine
+    * coordinates with a single field inversion for all of them.
+    *
+    * @param k
+    *           The multipliers
+    * @param compressed
+    *           Specifies whether the resulting points should use point
+    *           compression when encoded
+    * @return The points k[i] * G
+    */
+   public static Point[] multiplyG(BigInteger[] k, boolean compressed) {
+      JacobianPoint[] points = new JacobianPoint[k.length];
+      for (int i = 0; i < k.length; i++) {
+         points[i] = new JacobianPoint();
+         multiplyG(points[i], k[i]);
+      }
+      return JacobianPoint.toAffine(points, compressed);
+   }
+
+   private static void multiplyG(JacobianPoint R, BigInteger k) {
+      k = reduce(k);
+      int[] table = GeneratorTable.TABLE;
+      int windows = (Parameters.n.bitLength() + G_WINDOW_BITS - 1) / G_WINDOW_BITS;
+      for (int i = 0; i < windows; i++) {
+         int digit = 0;
+         for (int j = G_WINDOW_BITS - 1; j >= 0; j--) {
+            digit = (digit << 1) | (k.testBit(i * G_WINDOW_BITS + j) ? 1 : 0);
+         }
+         if (digit != 0) {
+            R.add(table, (i * G_WINDOW_SIZE + digit - 1) * JacobianPoint.AFFINE_SIZE);
+         }
+      }
+   }
 
-      Point neg = p.negate();
-      Point R = p;
+   private static final int G_WINDOW_BITS = 4;
 
-      for (int i = h.bitLength() - 2; i > 0; --i) {
-         R = R.twice();
+   /**
+    * The number of table entries for every window of the multiplier in
+    * {@link #multiplyG(BigInteger)}
+    */
+   private static final int G_WINDOW_SIZE = (1 << G_WINDOW_BITS) - 1;
 
-         boolean hBit = h.testBit(i);
-         boolean eBit = e.testBit(i);
+   /**
+    * Holder of the precomputed generator table. The table is built when this
+    * class is initialized, which the JVM guarantees to happen exactly once and
+    * to be visible to all threads.
+    */
+   private static class GeneratorTable {
+      private static final int[] TABLE = buildGeneratorTable();
+   }
 
-         if (hBit != eBit) {
-            R = R.add(hBit ? p : neg);
+   private static int[] buildGeneratorTable() {
+      int windows = (Parameters.n.bitLength() + G_WINDOW_BITS - 1) / G_WINDOW_BITS;
+      int count = windows * G_WINDOW_SIZE;
+      int[] jacobian = new int[count * JacobianPoint.JACOBIAN_SIZE];
+      JacobianPoint base = new JacobianPoint(Parameters.G);
+      JacobianPoint P = new JacobianPoint();
+      int index = 0;
+      for (int i = 0; i < windows; i++) {
+         // base is the base of this window, and P runs through its multiples
+         P.set(base);
+         for (int j = 0; j < G_WINDOW_SIZE; j++) {
+            P.write(jacobian, index++ * JacobianPoint.JACOBIAN_SIZE);
+            P.add(base);
          }
+         // The base of the next window is 16 times the base of this window
+         base.set(P);
       }
+      // Convert all entries to affine coordinates with a single inversion
+      int[] table = new int[count * JacobianPoint.AFFINE_SIZE];
+      JacobianPoint.toAffine(jacobian, table, count);
+      return table;
+   }
 
+   /**
+    * Calculate k * P + l * Q.
+    * <p>
+    * Both multipliers are split using the secp256k1 endomorphism and recoded
+    * in width-w NAF form, and the four resulting multiplications share the
+    * doublings of a single double and add loop over 129 bits. If P is the
+    * generator point {@link Parameters#G}, as in signature verification,
+    * precomputed tables with a wider window are used for it.
+    */
+   public static Point sumOfTwoMultiplies(Point P, BigInteger k, Point Q, BigInteger l) {
+      return sumOfTwoMultipliesJacobian(P, k, Q, l).toAffine(false);
+   }
+
+   /**
+    * Calculate k * P + l * Q like
+    * {@link #sumOfTwoMultiplies(Point, BigInteger, Point, BigInteger)}, but
+    * leave the result in Jacobian coordinates. This saves the field inversion
+    * for callers that only need to compare the result, see
+    * {@link JacobianPoint#hasAffineX(BigInteger)}.
+    */
+   public static JacobianPoint sumOfTwoMultipliesJacobian(Point P, BigInteger k, Point Q, BigInteger l) {
+      int[][] tables = new int[4][];
+      boolean[] affine = new boolean[4];
+      int[][] wnafs = new int[4][];
+      if (!P.isInfinity()) {
+         BigInteger[] kSplit = Secp256k1Endomorphism.splitScalar(reduce(k));
+         if (P.equals(Parameters.G)) {
+            tables[0] = GeneratorWnafTable.TABLE;
+            tables[1] = GeneratorWnafTable.LAMBDA_TABLE;
+            affine[0] = affine[1] = true;
+            wnafs[0] = wnaf(kSplit[0], G_WNAF_WINDOW);
+            wnafs[1] = wnaf(kSplit[1], G_WNAF_WINDOW);
+         } else {
+            tables[0] = oddMultiples(P, WINDOW);
+            tables[1] = tables[0].clone();
+            Secp256k1Endomorphism.applyToTable(tables[1], JacobianPoint.JACOBIAN_SIZE);
+            wnafs[0] = wnaf(kSplit[0], WINDOW);
+            wnafs[1] = wnaf(kSplit[1], WINDOW);
+         }
+      } else {
+         wnafs[0] = wnafs[1] = new int[0];
+      }
+      if (!Q.isInfinity()) {
+         BigInteger[] lSplit = Secp256k1Endomorphism.splitScalar(reduce(l));
+         tables[2] = oddMultiples(Q, WINDOW);
+         tables[3] = tables[2].clone();
+         Secp256k1Endomorphism.applyToTable(tables[3], JacobianPoint.JACOBIAN_SIZE);
+         wnafs[2] = wnaf(lSplit[0], WINDOW);
+         wnafs[3] = wnaf(lSplit[1], WINDOW);
+      } else {
+         wnafs[2] = wnafs[3] = new int[0];
+      }
+
+      JacobianPoint R = new JacobianPoint();
+      interleave(R, tables, affine, wnafs);
       return R;
    }
 
-   public static Point sumOfTwoMultiplies(Point P, BigInteger k, Point Q, BigInteger l) {
-      int m = Math.max(k.bitLength(), l.bitLength());
-      Point Z = P.add(Q);
-      Point R = P.getCurve().getInfinity();
+   /**
+    * The window width used for the NAF form of multipliers of arbitrary
+    * points. The tables of odd multiples of a point have 2^(WINDOW - 2)
+    * entries.
+    */
+   private static final int WINDOW = 5;
 
-      for (int i = m - 1; i >= 0; --i) {
-         R = R.twice();
+   /**
+    * The window width used for the NAF form of multipliers of the generator
+    * point in {@link #sumOfTwoMultiplies(Point, BigInteger, Point, BigInteger)}
+    */
+   private static final int G_WNAF_WINDOW = 8;
 
-         if (k.testBit(i)) {
-            if (l.testBit(i)) {
-               R = R.add(Z);
+   /**
+    * Holder of the precomputed tables of odd multiples of G and lambda * G in
+    * affine coordinates. The tables are built when this class is initialized.
+    */
+   private static class GeneratorWnafTable {
+      private static final int[] TABLE = buildGeneratorWnafTable();
+      private static final int[] LAMBDA_TABLE = buildGeneratorLambdaTable(TABLE);
+   }
+
+   private static int[] buildGeneratorWnafTable() {
+      int[] jacobian = oddMultiples(Parameters.G, G_WNAF_WINDOW);
+      int count = jacobian.length / JacobianPoint.JACOBIAN_SIZE;
+      int[] table = new int[count * JacobianPoint.AFFINE_SIZE];
+      JacobianPoint.toAffine(jacobian, table, count);
+      return table;
+   }
+
+   private static int[] buildGeneratorLambdaTable(int[] table) {
+      int[] lambdaTable = table.clone();
+      Secp256k1Endomorphism.applyToTable(lambdaTable, JacobianPoint.AFFINE_SIZE);
+      return lambdaTable;
+   }
+
+   /**
+    * Reduce a multiplier modulo the group order n
+    */
+   private static BigInteger reduce(BigInteger k) {
+      if (k.signum() < 0 || k.compareTo(Parameters.n) >= 0) {
+         return k.mod(Parameters.n);
+      }
+      return k;
+   }
+
+   /**
+    * Build a table of the odd multiples P, 3P, 5P, ..., (2^(w-1) - 1)P in
+    * Jacobian coordinates, as used with multipliers in width-w NAF form.
+    */
+   private static int[] oddMultiples(Point p, int w) {
+      int count = 1 << (w - 2);
+      int size = JacobianPoint.JACOBIAN_SIZE;
+      int[] table = new int[count * size];
+      JacobianPoint acc = new JacobianPoint(p);
+      JacobianPoint twice = new JacobianPoint(p);
+      twice.twice();
+      acc.write(table, 0);
+      for (int i = 1; i < count; i++) {
+         acc.add(twice);
+         acc.write(table, i * size);
+      }
+      return table;
+   }
+
+   /**
+    * Recode a signed multiplier in width-w non-adjacent form. Every digit is
+    * zero or an odd number in the range [-(2^(w-1) - 1), 2^(w-1) - 1], and
+    * any w consecutive digits contain at most one non-zero digit.
+    *
+    * @return The digits with the least significant digit first.
+    */
+   static int[] wnaf(BigInteger k, int w) {
+      boolean negative = k.signum() < 0;
+      if (negative) {
+         k = k.negate();
+      }
+      int length = k.bitLength() + 1;
+      int[] wnaf = new int[length];
+      int carry = 0;
+      int bit = 0;
+      while (bit < length) {
+         if ((k.testBit(bit) ? 1 : 0) == carry) {
+            bit++;
+            continue;
+         }
+         int now = Math.min(w, length - bit);
+         int word = carry;
+         for (int i = now - 1; i >= 0; i--) {
+            word += (k.testBit(bit + i) ? 1 : 0) << i;
+         }
+         carry = (word >> (w - 1)) & 1;
+         word -= carry << w;
+         wnaf[bit] = negative ? -word : word;
+         bit += now;
+      }
+      return wnaf;
+   }
+
+   /**
+    * Add the sum of several multiplications to R in a single double and add
+    * loop. For every table the digit d of the corresponding NAF form selects
+    * the table entry holding |d| times the base point, which is added or
+    * subtracted depending on the sign of d.
+    */
+   private static void interleave(JacobianPoint R, int[][] tables, boolean[] affine, int[][] wnafs) {
+      int length = 0;
+      for (int[] wnaf : wnafs) {
+         length = Math.max(length, wnaf.length);
+      }
+      for (int bit = length - 1; bit >= 0; bit--) {
+         R.twice();
+         for (int i = 0; i < tables.length; i++) {
+            int[] wnaf = wnafs[i];
+            if (bit >= wnaf.length || wnaf[bit] == 0) {
+               continue;
+            }
+            int digit = wnaf[bit];
+            int index = (digit < 0 ? -digit : digit) >> 1;
+            if (affine[i]) {
+               R.add(tables[i], index * JacobianPoint.AFFINE_SIZE, digit < 0);
             } else {
-               R = R.add(P);
+               R.addJacobian(tables[i], index * JacobianPoint.JACOBIAN_SIZE, digit < 0);
             }
-         } else {
-            if (l.testBit(i)) {
-               R = R.add(Q);
+         }
+      }
+   }
+
+   /**
+    * Check the GLV and wNAF based multiplications against a plain double and
+    * add over {@link Point}, which uses {@link BigInteger} field arithmetic.
+    * Edge multipliers such as 0, n - 1, n and 2^256 - 1 are included.
+    * 
+    * @return true iff the tests succeed
+    */
+   public static boolean testTestVectors() {
+      BigInteger n = Parameters.n;
+      Point G = Parameters.G;
+      Random random = new Random(0xec7L);
+      BigInteger[] values = new BigInteger[14];
+      values[0] = BigInteger.ZERO;
+      values[1] = BigInteger.ONE;
+      values[2] = BigInteger.valueOf(2);
+      values[3] = n.subtract(BigInteger.ONE);
+      values[4] = n;
+      values[5] = n.add(BigInteger.ONE);
+      values[6] = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE);
+      values[7] = BigInteger.ONE.negate();
+      values[8] = Secp256k1Endomorphism.LAMBDA;
+      values[9] = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+      for (int i = 10; i < values.length; i++) {
+         values[i] = new BigInteger(256, random);
+      }
+
+      // The NAF digits add up to the multiplier and have the expected form
+      for (BigInteger k : values) {
+         for (int w = 2; w <= G_WNAF_WINDOW; w++) {
+            if (!checkWnaf(k, w) || !checkWnaf(k.negate(), w)) {
+               return false;
             }
          }
       }
 
-      return R;
+      // lambda * P = (beta * x, y)
+      Point lambdaG = referenceMultiply(G, Secp256k1Endomorphism.LAMBDA);
+      if (!lambdaG.getX().toBigInteger().equals(
+            G.getX().toBigInteger().multiply(Secp256k1Endomorphism.BETA).mod(Secp256k1Field.P))
+            || !lambdaG.getY().toBigInteger().equals(G.getY().toBigInteger())) {
+         return false;
+      }
+
+      Point Q = referenceMultiply(G, values[12]);
+      Point[] expectedG = new Point[values.length];
+      for (int i = 0; i < values.length; i++) {
+         BigInteger k = values[i];
+         expectedG[i] = referenceMultiply(G, k);
+         if (!multiply(G, k).equals(expectedG[i]) || !multiplyG(k).equals(expectedG[i])) {
+            return false;
+         }
+         Point expectedQ = referenceMultiply(Q, k);
+         if (!multiply(Q, k).equals(expectedQ)) {
+            return false;
+         }
+         BigInteger l = values[(i + 5) % values.length];
+         Point expectedSum = expectedG[i].add(referenceMultiply(Q, l));
+         // Once with the generator tables and once without
+         if (!sumOfTwoMultiplies(G, k, Q, l).equals(expectedSum)
+               || !sumOfTwoMultiplies(Q, l, G, k).equals(expectedSum)) {
+            return false;
+         }
+      }
+      Point[] batch = multiplyG(values, false);
+      for (int i = 0; i < values.length; i++) {
+         if (!batch[i].equals(expectedG[i])) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static boolean checkWnaf(BigInteger k, int w) {
+      int[] digits = wnaf(k, w);
+      BigInteger sum = BigInteger.ZERO;
+      int lastNonZero = -w;
+      for (int i = digits.length - 1; i >= 0; i--) {
+         sum = sum.shiftLeft(1).add(BigInteger.valueOf(digits[i]));
+      }
+      for (int i = 0; i < digits.length; i++) {
+         int d = digits[i];
+         if (d == 0) {
+            continue;
+         }
+         if ((d & 1) == 0 || Math.abs(d) >= 1 << (w - 1) || i - lastNonZero < w) {
+            return false;
+         }
+         lastNonZero = i;
+      }
+      return sum.equals(k);
+   }
+
+   /**
+    * Multiply a point with a plain double and add loop, using only the affine
+    * arithmetic of {@link Point}
+    */
+   private static Point referenceMultiply(Point p, BigInteger k) {
+      k = k.mod(Parameters.n);
+      Point r = Parameters.curve.getInfinity();
+      for (int i = k.bitLength() - 1; i >= 0; i--) {
+         r = r.twice();
+         if (k.testBit(i)) {
+            r = r.add(p);
+         }
+      }
+      return r;
    }
 
 }
@@ -18,8 +18,8 @@ public class FieldElement implements Serializable {
 
    private static final BigInteger TWO = BigInteger.valueOf(2);
 
-   private BigInteger _x;
-   private BigInteger _q;
+   private final BigInteger _x;
+   private final BigInteger _q;
 
    public FieldElement(BigInteger q, BigInteger x) {
       this._x = x;
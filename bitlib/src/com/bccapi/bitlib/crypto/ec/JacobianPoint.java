@@ -0,0 +1,513 @@
+package com.bccapi.bitlib.crypto.ec;
+
+import java.math.BigInteger;
+
+/**
+ * This class represents a point on the secp256k1 curve in Jacobian projective
+ * coordinates. The triple (X, Y, Z) represents the affine point (X/Z^2,
+ * Y/Z^3), and Z = 0 represents the point at infinity.
+ * <p>
+ * Additions and doublings in Jacobian coordinates need no field inversions.
+ * Scalar multiplication therefore does all its work on this representation
+ * and only does a single inversion when converting the result back to an
+ * affine {@link Point}.
+ * <p>
+ * The coordinates are {@link Secp256k1Field} elements, and all operations
+ * modify this point in place using scratch space owned by the point. A
+ * JacobianPoint is therefore not thread-safe, and is meant to be used as the
+ * accumulator of a single computation.
+ */
+public class JacobianPoint {
+
+   private static final int LIMBS = Secp256k1Field.LIMBS;
+
+   /**
+    * The number of ints used by an affine point in a precomputed table, see
+    * {@link #add(int[], int)}
+    */
+   public static final int AFFINE_SIZE = 2 * LIMBS;
+
+   /**
+    * The number of ints used by a point in Jacobian coordinates in a
+    * precomputed table, see {@link #addJacobian(int[], int, boolean)}
+    */
+   public static final int JACOBIAN_SIZE = 3 * LIMBS;
+
+   private final int[] _x;
+   private final int[] _y;
+   private final int[] _z;
+
+   // Scratch space for the point formulas
+   private final int[] _t0;
+   private final int[] _t1;
+   private final int[] _t2;
+   private final int[] _t3;
+   private final int[] _t4;
+   private final int[] _t5;
+   private final int[] _t6;
+   private final int[] _b;
+
+   /**
+    * Create a new point at infinity.
+    */
+   public JacobianPoint() {
+      _x = new int[LIMBS];
+      _y = new int[LIMBS];
+      _z = new int[LIMBS];
+      _t0 = new int[LIMBS];
+      _t1 = new int[LIMBS];
+      _t2 = new int[LIMBS];
+      _t3 = new int[LIMBS];
+      _t4 = new int[LIMBS];
+      _t5 = new int[LIMBS];
+      _t6 = new int[LIMBS];
+      _b = new int[JACOBIAN_SIZE];
+      setInfinity();
+   }
+
+   /**
+    * Create a new point from an affine point.
+    */
+   public JacobianPoint(Point p) {
+      this();
+      set(p);
+   }
+
+   /**
+    * Create a copy of a point.
+    */
+   public JacobianPoint(JacobianPoint p) {
+      this();
+      set(p);
+   }
+
+   public void setInfinity() {
+      Secp256k1Field.setInt(_x, 1);
+      Secp256k1Field.setInt(_y, 1);
+      Secp256k1Field.setInt(_z, 0);
+   }
+
+   /**
+    * Set this point from an affine point. This is free as Z is set to one.
+    */
+   public void set(Point p) {
+      if (p.isInfinity()) {
+         setInfinity();
+         return;
+      }
+      Secp256k1Field.setBytes(_x, EcTools.integerToBytes(p.getX().toBigInteger(), 32), 0);
+      Secp256k1Field.setBytes(_y, EcTools.integerToBytes(p.getY().toBigInteger(), 32), 0);
+      Secp256k1Field.setInt(_z, 1);
+   }
+
+   public void set(JacobianPoint p) {
+      Secp256k1Field.copy(_x, p._x);
+      Secp256k1Field.copy(_y, p._y);
+      Secp256k1Field.copy(_z, p._z);
+   }
+
+   /**
+    * Set this point from an affine point in a precomputed table, see
+    * {@link #add(int[], int)}
+    */
+   public void set(int[] table, int offset) {
+      System.arraycopy(table, offset, _x, 0, LIMBS);
+      System.arraycopy(table, offset + LIMBS, _y, 0, LIMBS);
+      Secp256k1Field.setInt(_z, 1);
+   }
+
+   public boolean isInfinity() {
+      return Secp256k1Field.isZero(_z);
+   }
+
+   /**
+    * Convert this point to an affine point. This costs one field inversion.
+    *
+    * @param compressed
+    *           Specifies whether the affine point should use point compression
+    *           when encoded
+    * @return The affine representation of this point
+    */
+   public Point toAffine(boolean compressed) {
+      if (isInfinity()) {
+         return Parameters.curve.getInfinity();
+      }
+      normalizeInto(_t0, _t1);
+      Curve curve = Parameters.curve;
+      return new Point(curve, curve.fromBigInteger(Secp256k1Field.toBigInteger(_t0)),
+            curve.fromBigInteger(Secp256k1Field.toBigInteger(_t1)), compressed);
+   }
+
+   /**
+    * Write the affine coordinates of this point to a precomputed table. The
+    * point must not be the point at infinity. This costs one field inversion.
+    *
+    * @param table
+    *           The table to write to
+    * @param offset
+    *           The offset in the table where the affine x-coordinate is
+    *           written, the y-coordinate follows right after.
+    */
+   public void toAffine(int[] table, int offset) {
+      normalizeInto(_t0, _t1);
+      System.arraycopy(_t0, 0, table, offset, LIMBS);
+      System.arraycopy(_t1, 0, table, offset + LIMBS, LIMBS);
+   }
+
+   private void normalizeInto(int[] x, int[] y) {
+      Secp256k1Field.invert(_t2, _z);
+      normalize(_x, _y, _t2, x, y, _t3);
+   }
+
+   /**
+    * Calculate the affine coordinates x = X/Z^2 and y = Y/Z^3 given the
+    * inverse of Z.
+    */
+   private static void normalize(int[] X, int[] Y, int[] zInv, int[] x, int[] y, int[] t) {
+      Secp256k1Field.sqr(t, zInv);
+      Secp256k1Field.mul(x, X, t);
+      Secp256k1Field.mul(t, t, zInv);
+      Secp256k1Field.mul(y, Y, t);
+   }
+
+   /**
+    * Convert several points to affine points with a single field inversion
+    * for all of them, see {@link Secp256k1Field#invertAll(int[][], int[][])}.
+    *
+    * @param points
+    *           The points to convert
+    * @param compressed
+    *           Specifies whether the affine points should use point
+    *           compression when encoded
+    * @return The affine representations of the points
+    */
+   public static Point[] toAffine(JacobianPoint[] points, boolean compressed) {
+      int count = points.length;
+      int[] jacobian = new int[count * JACOBIAN_SIZE];
+      for (int i = 0; i < count; i++) {
+         points[i].write(jacobian, i * JACOBIAN_SIZE);
+      }
+      int[] affine = new int[count * AFFINE_SIZE];
+      toAffine(jacobian, affine, count);
+
+      Curve curve = Parameters.curve;
+      Point[] result = new Point[count];
+      int[] x = new int[LIMBS];
+      int[] y = new int[LIMBS];
+      for (int i = 0; i < count; i++) {
+         if (points[i].isInfinity()) {
+            result[i] = curve.getInfinity();
+            continue;
+         }
+         System.arraycopy(affine, i * AFFINE_SIZE, x, 0, LIMBS);
+         System.arraycopy(affine, i * AFFINE_SIZE + LIMBS, y, 0, LIMBS);
+         result[i] = new Point(curve, curve.fromBigInteger(Secp256k1Field.toBigInteger(x)),
+               curve.fromBigInteger(Secp256k1Field.toBigInteger(y)), compressed);
+      }
+      return result;
+   }
+
+   /**
+    * Convert a precomputed table of points in Jacobian coordinates to a table
+    * of affine points with a single field inversion for all of them. Points
+    * at infinity end up as (0, 0) in the affine table.
+    *
+    * @param jacobian
+    *           The table of points in Jacobian coordinates, see
+    *           {@link #write(int[], int)}
+    * @param affine
+    *           The table receiving the affine points, see
+    *           {@link #add(int[], int)}
+    * @param count
+    *           The number of points to convert
+    */
+   public static void toAffine(int[] jacobian, int[] affine, int count) {
+      int[][] x = new int[count][LIMBS];
+      int[][] y = new int[count][LIMBS];
+      int[][] z = new int[count][LIMBS];
+      for (int i = 0; i < count; i++) {
+         int offset = i * JACOBIAN_SIZE;
+         System.arraycopy(jacobian, offset, x[i], 0, LIMBS);
+         System.arraycopy(jacobian, offset + LIMBS, y[i], 0, LIMBS);
+         System.arraycopy(jacobian, offset + 2 * LIMBS, z[i], 0, LIMBS);
+      }
+      Secp256k1Field.invertAll(z, z);
+      int[] t = new int[LIMBS];
+      for (int i = 0; i < count; i++) {
+         normalize(x[i], y[i], z[i], x[i], y[i], t);
+         System.arraycopy(x[i], 0, affine, i * AFFINE_SIZE, LIMBS);
+         System.arraycopy(y[i], 0, affine, i * AFFINE_SIZE + LIMBS, LIMBS);
+      }
+   }
+
+   /**
+    * Get the affine x-coordinate of this point. This costs one field
+    * inversion.
+    */
+   public FieldElement getAffineX() {
+      if (isInfinity()) {
+         return null;
+      }
+      Secp256k1Field.invert(_t0, _z);
+      Secp256k1Field.sqr(_t0, _t0);
+      Secp256k1Field.mul(_t0, _t0, _x);
+      return Parameters.curve.fromBigInteger(Secp256k1Field.toBigInteger(_t0));
+   }
+
+   /**
+    * Determine whether the affine x-coordinate of this point equals a given
+    * value without doing a field inversion, by comparing X with x * Z^2.
+    *
+    * @param x
+    *           The value to compare with, which must be in the range [0, p)
+    * @return true if this point is not the point at infinity and has the
+    *         affine x-coordinate x
+    */
+   public boolean hasAffineX(BigInteger x) {
+      if (isInfinity()) {
+         return false;
+      }
+      Secp256k1Field.setBytes(_t0, EcTools.integerToBytes(x, 32), 0);
+      Secp256k1Field.sqr(_t1, _z);
+      Secp256k1Field.mul(_t0, _t0, _t1);
+      Secp256k1Field.copy(_t1, _x);
+      return Secp256k1Field.equals(_t0, _t1);
+   }
+
+   /**
+    * Return the encoding of the point, compressed if requested. This costs one
+    * field inversion.
+    */
+   public byte[] getEncoded(boolean compressed) {
+      return toAffine(compressed).getEncoded();
+   }
+
+   public void negate() {
+      Secp256k1Field.negate(_y, _y);
+   }
+
+   // http://hyperelliptic.org/EFD/g1p/auto-shortw-jacobian-0.html#doubling-dbl-2009-l
+   public void twice() {
+      if (isInfinity()) {
+         // Twice identity element (point at infinity) is identity
+         return;
+      }
+
+      // secp256k1 has no point with y = 0, so the result is never infinity
+      int[] a = _t0;
+      int[] b = _t1;
+      int[] c = _t2;
+      int[] d = _t3;
+      int[] t = _t4;
+      Secp256k1Field.sqr(a, _x);
+      Secp256k1Field.sqr(b, _y);
+      Secp256k1Field.mul(_z, _z, _y);
+      Secp256k1Field.mulInt(_z, _z, 2);
+      Secp256k1Field.sqr(c, b);
+      Secp256k1Field.add(d, _x, b);
+      Secp256k1Field.sqr(d, d);
+      Secp256k1Field.sub(d, d, a);
+      Secp256k1Field.sub(d, d, c);
+      Secp256k1Field.mulInt(d, d, 2);
+      // e = 3 * a, f = e^2
+      int[] e = a;
+      int[] f = b;
+      Secp256k1Field.mulInt(e, a, 3);
+      Secp256k1Field.sqr(f, e);
+      Secp256k1Field.mulInt(t, d, 2);
+      Secp256k1Field.sub(_x, f, t);
+      Secp256k1Field.sub(t, d, _x);
+      Secp256k1Field.mul(t, e, t);
+      Secp256k1Field.mulInt(c, c, 8);
+      Secp256k1Field.sub(_y, t, c);
+   }
+
+   /**
+    * Add a point in Jacobian coordinates to this point.
+    */
+   public void add(JacobianPoint b) {
+      if (b == this) {
+         twice();
+         return;
+      }
+      b.write(_b, 0);
+      addJacobian(_b, 0, false);
+   }
+
+   /**
+    * Add a point in Jacobian coordinates from a precomputed table to this
+    * point. The table holds the X-, Y- and Z-coordinates of the point starting
+    * at the offset, each as {@link Secp256k1Field} elements, see
+    * {@link #write(int[], int)}.
+    *
+    * @param negate
+    *           Specifies whether the negated point from the table is added
+    */
+   // http://hyperelliptic.org/EFD/g1p/auto-shortw-jacobian.html#addition-add-1998-cmo-2
+   public void addJacobian(int[] table, int offset, boolean negate) {
+      int[] b = _t6;
+      System.arraycopy(table, offset + 2 * LIMBS, b, 0, LIMBS);
+      if (Secp256k1Field.isZero(b)) {
+         return;
+      }
+      if (isInfinity()) {
+         System.arraycopy(table, offset, _x, 0, LIMBS);
+         System.arraycopy(table, offset + LIMBS, _y, 0, LIMBS);
+         System.arraycopy(table, offset + 2 * LIMBS, _z, 0, LIMBS);
+         if (negate) {
+            negate();
+         }
+         return;
+      }
+
+      int[] u1 = _t0;
+      int[] u2 = _t1;
+      int[] s1 = _t2;
+      int[] s2 = _t3;
+      int[] t = _t4;
+      Secp256k1Field.sqr(t, b);
+      Secp256k1Field.mul(u1, _x, t);
+      Secp256k1Field.mul(t, t, b);
+      Secp256k1Field.mul(s1, _y, t);
+      Secp256k1Field.sqr(t, _z);
+      System.arraycopy(table, offset, b, 0, LIMBS);
+      Secp256k1Field.mul(u2, b, t);
+      Secp256k1Field.mul(t, t, _z);
+      System.arraycopy(table, offset + LIMBS, b, 0, LIMBS);
+      if (negate) {
+         Secp256k1Field.negate(b, b);
+      }
+      Secp256k1Field.mul(s2, b, t);
+      if (addInternal(u1, u2, s1, s2)) {
+         System.arraycopy(table, offset + 2 * LIMBS, b, 0, LIMBS);
+         Secp256k1Field.mul(_z, _z, b);
+         Secp256k1Field.mul(_z, _z, _t5);
+      }
+   }
+
+   /**
+    * Write the coordinates of this point to a precomputed table of points in
+    * Jacobian coordinates, see {@link #addJacobian(int[], int, boolean)}.
+    */
+   public void write(int[] table, int offset) {
+      System.arraycopy(_x, 0, table, offset, LIMBS);
+      System.arraycopy(_y, 0, table, offset + LIMBS, LIMBS);
+      System.arraycopy(_z, 0, table, offset + 2 * LIMBS, LIMBS);
+   }
+
+   /**
+    * Add an affine point to this point. This mixed addition is cheaper than
+    * adding two points in Jacobian coordinates, as the Z-coordinate of the
+    * affine point is one.
+    */
+   public void add(Point b) {
+      if (b.isInfinity()) {
+         return;
+      }
+      int[] xy = new int[AFFINE_SIZE];
+      toTable(b, xy, 0);
+      add(xy, 0);
+   }
+
+   /**
+    * Write the coordinates of an affine point to a precomputed table, see
+    * {@link #add(int[], int)}. The point must not be the point at infinity.
+    */
+   public static void toTable(Point p, int[] table, int offset) {
+      int[] t = new int[LIMBS];
+      Secp256k1Field.setBytes(t, EcTools.integerToBytes(p.getX().toBigInteger(), 32), 0);
+      System.arraycopy(t, 0, table, offset, LIMBS);
+      Secp256k1Field.setBytes(t, EcTools.integerToBytes(p.getY().toBigInteger(), 32), 0);
+      System.arraycopy(t, 0, table, offset + LIMBS, LIMBS);
+   }
+
+   /**
+    * Add an affine point from a precomputed table to this point. The table
+    * holds the x-coordinate of the point at the offset followed by the
+    * y-coordinate, each as {@link Secp256k1Field} elements. The affine point
+    * must not be the point at infinity.
+    */
+   public void add(int[] table, int offset) {
+      add(table, offset, false);
+   }
+
+   /**
+    * Add an affine point from a precomputed table to this point, see
+    * {@link #add(int[], int)}.
+    *
+    * @param negate
+    *           Specifies whether the negated point from the table is added
+    */
+   // http://hyperelliptic.org/EFD/g1p/auto-shortw-jacobian.html#addition-madd
+   public void add(int[] table, int offset, boolean negate) {
+      if (isInfinity()) {
+         set(table, offset);
+         if (negate) {
+            negate();
+         }
+         return;
+      }
+
+      int[] s1 = _t2;
+      int[] u2 = _t1;
+      int[] s2 = _t3;
+      int[] t = _t4;
+      System.arraycopy(table, offset, _t6, 0, LIMBS);
+      Secp256k1Field.sqr(t, _z);
+      Secp256k1Field.mul(u2, _t6, t);
+      System.arraycopy(table, offset + LIMBS, _t6, 0, LIMBS);
+      if (negate) {
+         Secp256k1Field.negate(_t6, _t6);
+      }
+      Secp256k1Field.mul(t, t, _z);
+      Secp256k1Field.mul(s2, _t6, t);
+      Secp256k1Field.copy(s1, _y);
+      Secp256k1Field.copy(_t0, _x);
+      if (addInternal(_t0, u2, s1, s2)) {
+         Secp256k1Field.mul(_z, _z, _t5);
+      }
+   }
+
+   /**
+    * Calculate X3 and Y3 of a point addition and leave H in _t5. Z3 is left to
+    * the caller.
+    *
+    * @return true if X3 and Y3 were calculated, false if the result was found
+    *         to be the point at infinity or a doubling, and this point has
+    *         already been updated
+    */
+   private boolean addInternal(int[] u1, int[] u2, int[] s1, int[] s2) {
+      int[] h = _t5;
+      int[] r = _t6;
+      Secp256k1Field.sub(h, u2, u1);
+      Secp256k1Field.sub(r, s2, s1);
+      if (Secp256k1Field.isZero(h)) {
+         if (Secp256k1Field.isZero(r)) {
+            // this = b, i.e. this must be doubled
+            twice();
+         } else {
+            // this = -b, i.e. the result is the point at infinity
+            setInfinity();
+         }
+         return false;
+      }
+      // u2 and s2 are no longer needed and are reused for h^2 and h^3
+      int[] h2 = u2;
+      int[] h3 = s2;
+      int[] v = u1;
+      int[] t = _t4;
+      Secp256k1Field.sqr(h2, h);
+      Secp256k1Field.mul(h3, h2, h);
+      Secp256k1Field.mul(v, u1, h2);
+      Secp256k1Field.sqr(_x, r);
+      Secp256k1Field.sub(_x, _x, h3);
+      Secp256k1Field.mulInt(t, v, 2);
+      Secp256k1Field.sub(_x, _x, t);
+      Secp256k1Field.sub(t, v, _x);
+      Secp256k1Field.mul(t, r, t);
+      Secp256k1Field.mul(s1, s1, h3);
+      Secp256k1Field.sub(_y, t, s1);
+      return true;
+   }
+
+}
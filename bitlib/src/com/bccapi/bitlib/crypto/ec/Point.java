@@ -15,10 +15,10 @@ public class Point implements Serializable {
 
    private static final long serialVersionUID = 1L;
    
-   private Curve _curve;
-   private FieldElement _x;
-   private FieldElement _y;
-   private boolean _compressed;
+   private final Curve _curve;
+   private final FieldElement _x;
+   private final FieldElement _y;
+   private final boolean _compressed;
 
    public Point(Curve curve, FieldElement x, FieldElement y) {
       this(curve, x, y, false);
@@ -0,0 +1,182 @@
+package com.bccapi.bitlib.crypto.ec;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of decoded secp256k1 points keyed by their encoding.
+ * <p>
+ * Decoding a compressed point costs a field square root, and the same public
+ * keys tend to be decoded again and again. The cache is split into segments
+ * that are locked independently, and each segment evicts its least recently
+ * used entry when it is full. Points are decoded and validated with
+ * {@link EcTools#decodePoint(byte[])} outside of any lock. Encodings that fail
+ * to decode are cached as well, so that a bad key seen again and again is not
+ * decoded every time. This class is thread-safe.
+ */
+public class PointCache {
+
+   private static final int SEGMENTS = 16;
+
+   // Cached in place of a point for encodings that are not valid points
+   private static final Object INVALID = new Object();
+
+   private final Segment[] _segments;
+   private final AtomicLong _hits;
+   private final AtomicLong _misses;
+
+   /**
+    * Create a point cache.
+    *
+    * @param capacity
+    *           The maximum number of points to keep
+    */
+   public PointCache(int capacity) {
+      int segmentCapacity = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+      _segments = new Segment[SEGMENTS];
+      for (int i = 0; i < SEGMENTS; i++) {
+         _segments[i] = new Segment(segmentCapacity);
+      }
+      _hits = new AtomicLong();
+      _misses = new AtomicLong();
+   }
+
+   /**
+    * Get the point with a given encoding, decoding it if it is not in the
+    * cache.
+    *
+    * @param encoded
+    *           The encoded point
+    * @return The decoded point
+    * @throws RuntimeException
+    *            If the encoding is invalid or the point is not on the curve
+    */
+   public Point get(byte[] encoded) {
+      Point point = tryGet(encoded);
+      if (point == null) {
+         throw new RuntimeException("Invalid point encoding");
+      }
+      return point;
+   }
+
+   /**
+    * Get the point with a given encoding, decoding it if it is not in the
+    * cache. Use this for encodings from untrusted sources such as scripts.
+    *
+    * @param encoded
+    *           The encoded point
+    * @return The decoded point, or null if the encoding is invalid or the
+    *         point is not on the curve
+    */
+   public Point tryGet(byte[] encoded) {
+      Key key = new Key(encoded);
+      Segment segment = _segments[(key._hash ^ (key._hash >>> 16)) & (SEGMENTS - 1)];
+      Object cached;
+      synchronized (segment) {
+         cached = segment.get(key);
+      }
+      if (cached != null) {
+         _hits.incrementAndGet();
+         return cached == INVALID ? null : (Point) cached;
+      }
+      _misses.incrementAndGet();
+      Point point;
+      try {
+         point = EcTools.decodePoint(encoded);
+      } catch (RuntimeException e) {
+         point = null;
+      }
+      synchronized (segment) {
+         segment.put(new Key(encoded.clone()), point == null ? INVALID : point);
+      }
+      return point;
+   }
+
+   /**
+    * Get the number of lookups that found the point in the cache
+    */
+   public long getHits() {
+      return _hits.get();
+   }
+
+   /**
+    * Get the number of lookups that had to decode the point
+    */
+   public long getMisses() {
+      return _misses.get();
+   }
+
+   /**
+    * Get the number of points currently in the cache
+    */
+   public int size() {
+      int size = 0;
+      for (Segment segment : _segments) {
+         synchronized (segment) {
+            size += segment.size();
+         }
+      }
+      return size;
+   }
+
+   /**
+    * Remove all points from the cache and reset the counters
+    */
+   public void clear() {
+      for (Segment segment : _segments) {
+         synchronized (segment) {
+            segment.clear();
+         }
+      }
+      _hits.set(0);
+      _misses.set(0);
+   }
+
+   private static class Segment extends LinkedHashMap<Key, Object> {
+
+      private static final long serialVersionUID = 1L;
+
+      private final int _capacity;
+
+      private Segment(int capacity) {
+         // Iterate in access order so that the eldest entry is the least
+         // recently used
+         super(16, 0.75f, true);
+         _capacity = capacity;
+      }
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+         return size() > _capacity;
+      }
+
+   }
+
+   private static class Key {
+
+      private final byte[] _bytes;
+      private final int _hash;
+
+      private Key(byte[] bytes) {
+         _bytes = bytes;
+         _hash = Arrays.hashCode(bytes);
+      }
+
+      @Override
+      public int hashCode() {
+         return _hash;
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         if (!(obj instanceof Key)) {
+            return false;
+         }
+         return Arrays.equals(_bytes, ((Key) obj)._bytes);
+      }
+
+   }
+
+}
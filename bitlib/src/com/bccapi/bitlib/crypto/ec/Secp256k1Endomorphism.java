@@ -0,0 +1,140 @@
+package com.bccapi.bitlib.crypto.ec;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * The efficiently computable endomorphism of secp256k1 used for GLV scalar
+ * multiplication.
+ * <p>
+ * For any point P = (x, y) on the curve lambda * P = (beta * x, y), where beta
+ * is a cube root of unity modulo p and lambda is a cube root of unity modulo
+ * n. A scalar k can be split into k1 + k2 * lambda (mod n) where k1 and k2 have
+ * at most 128 bits, which halves the number of doublings needed for k * P.
+ * <p>
+ * The constants and the decomposition are described in "Guide to Elliptic
+ * Curve Cryptography" by Hankerson, Menezes and Vanstone, section 3.5.
+ */
+public class Secp256k1Endomorphism {
+
+   public static final BigInteger BETA = new BigInteger(
+         "7ae96a2b657c07106e64479eac3434e99cf0497512f58995c1396c28719501ee", 16);
+
+   public static final BigInteger LAMBDA = new BigInteger(
+         "5363ad4cc05c30e0a5261c028812645a122e22ea20816678df02967c1b23bd72", 16);
+
+   // The short basis {(A1, B1), (A2, B2)} of the lattice of scalars (a, b)
+   // with a + b * lambda = 0 (mod n)
+   private static final BigInteger A1 = new BigInteger("3086d221a7d46bcde86c90e49284eb15", 16);
+   private static final BigInteger MINUS_B1 = new BigInteger("e4437ed6010e88286f547fa90abfe4c3", 16);
+   private static final BigInteger A2 = new BigInteger("114ca50f7a8e2f3f657c1108d9d44cfd8", 16);
+   private static final BigInteger B2 = A1;
+
+   // G1 = round(2^384 * B2 / n) and G2 = round(2^384 * -B1 / n), which allows
+   // the rounded divisions of the decomposition to be done with a shift
+   private static final BigInteger G1 = new BigInteger(
+         "3086d221a7d46bcde86c90e49284eb153daa8a1471e8ca7fe893209a45dbb031", 16);
+   private static final BigInteger G2 = new BigInteger(
+         "e4437ed6010e88286f547fa90abfe4c4221208ac9df506c61571b4ae8ac47f71", 16);
+   private static final int SHIFT = 384;
+   private static final BigInteger HALF = BigInteger.ONE.shiftLeft(SHIFT - 1);
+
+   private static final int[] BETA_FIELD = Secp256k1Field.create(BETA);
+
+   /**
+    * Split a scalar k in the range [0, n) into two signed scalars k1 and k2
+    * of at most 128 bits each, such that k = k1 + k2 * lambda (mod n).
+    *
+    * @return An array holding k1 and k2.
+    */
+   public static BigInteger[] splitScalar(BigInteger k) {
+      BigInteger c1 = k.multiply(G1).add(HALF).shiftRight(SHIFT);
+      BigInteger c2 = k.multiply(G2).add(HALF).shiftRight(SHIFT);
+      BigInteger k1 = k.subtract(c1.multiply(A1)).subtract(c2.multiply(A2));
+      BigInteger k2 = c1.multiply(MINUS_B1).subtract(c2.multiply(B2));
+      return new BigInteger[] { k1, k2 };
+   }
+
+   /**
+    * Apply the endomorphism to the points of a precomputed table in place by
+    * multiplying their x-coordinates with beta. This works for tables of
+    * affine points as well as tables of points in Jacobian coordinates, as X /
+    * Z^2 is scaled by beta when X is.
+    *
+    * @param table
+    *           The table to update
+    * @param entrySize
+    *           The number of ints used per point, either
+    *           {@link JacobianPoint#AFFINE_SIZE} or
+    *           {@link JacobianPoint#JACOBIAN_SIZE}
+    */
+   public static void applyToTable(int[] table, int entrySize) {
+      int[] x = new int[Secp256k1Field.LIMBS];
+      for (int offset = 0; offset < table.length; offset += entrySize) {
+         System.arraycopy(table, offset, x, 0, x.length);
+         Secp256k1Field.mul(x, x, BETA_FIELD);
+         System.arraycopy(x, 0, table, offset, x.length);
+      }
+   }
+
+   /**
+    * Check the constants and the decomposition against {@link BigInteger}
+    * arithmetic: beta and lambda are non-trivial cube roots of unity, and
+    * k1 + k2 * lambda = k (mod n) with k1 and k2 of at most 128 bits, for edge
+    * scalars and a fixed sequence of random scalars.
+    * 
+    * @return true iff the tests succeed
+    */
+   public static boolean testTestVectors() {
+      BigInteger p = Secp256k1Field.P;
+      BigInteger n = Parameters.n;
+      BigInteger three = BigInteger.valueOf(3);
+      if (BETA.equals(BigInteger.ONE) || !BETA.modPow(three, p).equals(BigInteger.ONE)) {
+         return false;
+      }
+      if (LAMBDA.equals(BigInteger.ONE) || !LAMBDA.modPow(three, n).equals(BigInteger.ONE)) {
+         return false;
+      }
+
+      Random random = new Random(0x61fL);
+      BigInteger[] values = new BigInteger[40];
+      values[0] = BigInteger.ZERO;
+      values[1] = BigInteger.ONE;
+      values[2] = n.subtract(BigInteger.ONE);
+      values[3] = n.shiftRight(1);
+      values[4] = LAMBDA;
+      values[5] = n.subtract(LAMBDA);
+      values[6] = BigInteger.ONE.shiftLeft(128);
+      values[7] = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE).mod(n);
+      for (int i = 8; i < values.length; i++) {
+         values[i] = new BigInteger(256, random).mod(n);
+      }
+      for (BigInteger k : values) {
+         BigInteger[] split = splitScalar(k);
+         if (split[0].abs().bitLength() > 128 || split[1].abs().bitLength() > 128) {
+            return false;
+         }
+         if (!split[0].add(split[1].multiply(LAMBDA)).subtract(k).mod(n).equals(BigInteger.ZERO)) {
+            return false;
+         }
+      }
+
+      // Applying the endomorphism to a table multiplies every x by beta
+      int size = JacobianPoint.AFFINE_SIZE;
+      int[] table = new int[3 * size];
+      BigInteger[] xs = new BigInteger[] { BigInteger.ONE, p.subtract(BigInteger.ONE), values[9].mod(p) };
+      for (int i = 0; i < xs.length; i++) {
+         System.arraycopy(Secp256k1Field.create(xs[i]), 0, table, i * size, Secp256k1Field.LIMBS);
+      }
+      applyToTable(table, size);
+      int[] x = Secp256k1Field.create();
+      for (int i = 0; i < xs.length; i++) {
+         System.arraycopy(table, i * size, x, 0, Secp256k1Field.LIMBS);
+         if (!Secp256k1Field.toBigInteger(x).equals(xs[i].multiply(BETA).mod(p))) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+}
@@ -0,0 +1,657 @@
+package com.bccapi.bitlib.crypto.ec;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Arithmetic in the field of the secp256k1 prime p = 2^256 - 2^32 - 977.
+ * <p>
+ * A field element is an array of ten 26-bit limbs with the least significant
+ * limb first, so element a has the value a[0] + a[1] * 2^26 + ... + a[9] *
+ * 2^234. All operations write their result into a caller supplied array. The
+ * operations used by the point formulas in {@link JacobianPoint} never
+ * allocate, which keeps them free of garbage; only {@link #invert(int[], int[])},
+ * {@link #sqrt(int[], int[])} and {@link #invertAll(int[][], int[][])} allocate
+ * a few temporary elements. The result array may be the same as any of the
+ * operands.
+ * <p>
+ * Elements are kept weakly normalized: limbs 0 to 8 hold 26 bits, limb 9 holds
+ * 22 bits, and the value is less than 2^256, but it may be larger than or
+ * equal to p. Use {@link #normalize(int[])} to get the unique representation
+ * in the range [0, p).
+ */
+public final class Secp256k1Field {
+
+   public static final int LIMBS = 10;
+
+   private static final int M26 = 0x3FFFFFF;
+   private static final int M22 = 0x3FFFFF;
+
+   // The limbs of p
+   private static final int P0 = 0x3FFFC2F;
+   private static final int P1 = 0x3FFFFBF;
+
+   // The limbs of 2 * p, used for subtraction and negation
+   private static final long[] TWO_P = new long[] { 2L * P0, 2L * P1, 2L * M26, 2L * M26, 2L * M26, 2L * M26,
+         2L * M26, 2L * M26, 2L * M26, 2L * M22 };
+
+   public static final BigInteger P = new BigInteger(
+         "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFC2F", 16);
+
+   private Secp256k1Field() {
+   }
+
+   /**
+    * Create a new field element with the value zero.
+    */
+   public static int[] create() {
+      return new int[LIMBS];
+   }
+
+   /**
+    * Create a new field element from a big integer in the range [0, p).
+    */
+   public static int[] create(BigInteger x) {
+      int[] r = new int[LIMBS];
+      setBytes(r, EcTools.integerToBytes(x, 32), 0);
+      return r;
+   }
+
+   public static void copy(int[] r, int[] a) {
+      System.arraycopy(a, 0, r, 0, LIMBS);
+   }
+
+   public static void setInt(int[] r, int value) {
+      r[0] = value & M26;
+      r[1] = value >>> 26;
+      for (int i = 2; i < LIMBS; i++) {
+         r[i] = 0;
+      }
+   }
+
+   /**
+    * Set a field element from 32 big endian bytes.
+    */
+   public static void setBytes(int[] r, byte[] bytes, int offset) {
+      for (int i = 0; i < LIMBS; i++) {
+         r[i] = 0;
+      }
+      for (int k = 0; k < 32; k++) {
+         int v = bytes[offset + 31 - k] & 0xFF;
+         int bit = k * 8;
+         int limb = bit / 26;
+         int shift = bit % 26;
+         r[limb] |= (v << shift) & M26;
+         if (shift > 18) {
+            r[limb + 1] |= v >>> (26 - shift);
+         }
+      }
+   }
+
+   /**
+    * Write a field element as 32 big endian bytes. The element is normalized
+    * as a side effect.
+    */
+   public static void getBytes(int[] a, byte[] bytes, int offset) {
+      normalize(a);
+      for (int k = 0; k < 32; k++) {
+         int bit = k * 8;
+         int limb = bit / 26;
+         int shift = bit % 26;
+         int v = a[limb] >>> shift;
+         if (shift > 18) {
+            v |= a[limb + 1] << (26 - shift);
+         }
+         bytes[offset + 31 - k] = (byte) v;
+      }
+   }
+
+   /**
+    * Get a field element as a big integer in the range [0, p). The element is
+    * normalized as a side effect.
+    */
+   public static BigInteger toBigInteger(int[] a) {
+      byte[] bytes = new byte[32];
+      getBytes(a, bytes, 0);
+      return new BigInteger(1, bytes);
+   }
+
+   /**
+    * Bring a field element into the range [0, p) by subtracting p if needed.
+    */
+   public static void normalize(int[] r) {
+      if (r[9] != M22 || (r[8] & r[7] & r[6] & r[5] & r[4] & r[3] & r[2]) != M26) {
+         return;
+      }
+      if (r[1] < P1 || (r[1] == P1 && r[0] < P0)) {
+         return;
+      }
+      // r >= p, subtract p by adding 2^256 - p and dropping bit 256
+      long t = r[0] + 0x3D1L;
+      r[0] = (int) t & M26;
+      t = r[1] + 0x40L + (t >>> 26);
+      r[1] = (int) t & M26;
+      for (int i = 2; i < 9; i++) {
+         t = r[i] + (t >>> 26);
+         r[i] = (int) t & M26;
+      }
+      r[9] = (int) (r[9] + (t >>> 26)) & M22;
+   }
+
+   /**
+    * Is the value of a field element zero modulo p?
+    */
+   public static boolean isZero(int[] a) {
+      int z0 = a[0] | a[1] | a[2] | a[3] | a[4] | a[5] | a[6] | a[7] | a[8] | a[9];
+      if (z0 == 0) {
+         return true;
+      }
+      // The value may also be p itself
+      return a[0] == P0 && a[1] == P1 && a[9] == M22
+            && (a[2] & a[3] & a[4] & a[5] & a[6] & a[7] & a[8]) == M26;
+   }
+
+   /**
+    * Are the values of two field elements equal modulo p? Both elements are
+    * normalized as a side effect.
+    */
+   public static boolean equals(int[] a, int[] b) {
+      normalize(a);
+      normalize(b);
+      for (int i = 0; i < LIMBS; i++) {
+         if (a[i] != b[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Is the normalized value of a field element odd? The element is normalized
+    * as a side effect.
+    */
+   public static boolean isOdd(int[] a) {
+      normalize(a);
+      return (a[0] & 1) != 0;
+   }
+
+   public static void add(int[] r, int[] a, int[] b) {
+      reduce(r, (long) a[0] + b[0], (long) a[1] + b[1], (long) a[2] + b[2], (long) a[3] + b[3], (long) a[4] + b[4],
+            (long) a[5] + b[5], (long) a[6] + b[6], (long) a[7] + b[7], (long) a[8] + b[8], (long) a[9] + b[9]);
+   }
+
+   /**
+    * Calculate a - b by adding a and 2 * p - b, which keeps all limbs positive.
+    */
+   public static void sub(int[] r, int[] a, int[] b) {
+      long[] p2 = TWO_P;
+      reduce(r, a[0] + p2[0] - b[0], a[1] + p2[1] - b[1], a[2] + p2[2] - b[2], a[3] + p2[3] - b[3], a[4] + p2[4]
+            - b[4], a[5] + p2[5] - b[5], a[6] + p2[6] - b[6], a[7] + p2[7] - b[7], a[8] + p2[8] - b[8], a[9] + p2[9]
+            - b[9]);
+   }
+
+   public static void negate(int[] r, int[] a) {
+      long[] p2 = TWO_P;
+      reduce(r, p2[0] - a[0], p2[1] - a[1], p2[2] - a[2], p2[3] - a[3], p2[4] - a[4], p2[5] - a[5], p2[6] - a[6],
+            p2[7] - a[7], p2[8] - a[8], p2[9] - a[9]);
+   }
+
+   /**
+    * Multiply a field element with a small non-negative integer. The integer
+    * must be less than 2^30.
+    */
+   public static void mulInt(int[] r, int[] a, int b) {
+      long m = b;
+      reduce(r, a[0] * m, a[1] * m, a[2] * m, a[3] * m, a[4] * m, a[5] * m, a[6] * m, a[7] * m, a[8] * m, a[9] * m);
+   }
+
+   /**
+    * Calculate a * b.
+    */
+   public static void mul(int[] r, int[] a, int[] b) {
+      long a0 = a[0], a1 = a[1], a2 = a[2], a3 = a[3], a4 = a[4];
+      long a5 = a[5], a6 = a[6], a7 = a[7], a8 = a[8], a9 = a[9];
+      long b0 = b[0], b1 = b[1], b2 = b[2], b3 = b[3], b4 = b[4];
+      long b5 = b[5], b6 = b[6], b7 = b[7], b8 = b[8], b9 = b[9];
+
+      // Schoolbook multiplication into 19 coefficients of 2^(26 * k)
+      long c0 = a0 * b0;
+      long c1 = a0 * b1 + a1 * b0;
+      long c2 = a0 * b2 + a1 * b1 + a2 * b0;
+      long c3 = a0 * b3 + a1 * b2 + a2 * b1 + a3 * b0;
+      long c4 = a0 * b4 + a1 * b3 + a2 * b2 + a3 * b1 + a4 * b0;
+      long c5 = a0 * b5 + a1 * b4 + a2 * b3 + a3 * b2 + a4 * b1 + a5 * b0;
+      long c6 = a0 * b6 + a1 * b5 + a2 * b4 + a3 * b3 + a4 * b2 + a5 * b1 + a6 * b0;
+      long c7 = a0 * b7 + a1 * b6 + a2 * b5 + a3 * b4 + a4 * b3 + a5 * b2 + a6 * b1 + a7 * b0;
+      long c8 = a0 * b8 + a1 * b7 + a2 * b6 + a3 * b5 + a4 * b4 + a5 * b3 + a6 * b2 + a7 * b1 + a8 * b0;
+      long c9 = a0 * b9 + a1 * b8 + a2 * b7 + a3 * b6 + a4 * b5 + a5 * b4 + a6 * b3 + a7 * b2 + a8 * b1 + a9 * b0;
+      long c10 = a1 * b9 + a2 * b8 + a3 * b7 + a4 * b6 + a5 * b5 + a6 * b4 + a7 * b3 + a8 * b2 + a9 * b1;
+      long c11 = a2 * b9 + a3 * b8 + a4 * b7 + a5 * b6 + a6 * b5 + a7 * b4 + a8 * b3 + a9 * b2;
+      long c12 = a3 * b9 + a4 * b8 + a5 * b7 + a6 * b6 + a7 * b5 + a8 * b4 + a9 * b3;
+      long c13 = a4 * b9 + a5 * b8 + a6 * b7 + a7 * b6 + a8 * b5 + a9 * b4;
+      long c14 = a5 * b9 + a6 * b8 + a7 * b7 + a8 * b6 + a9 * b5;
+      long c15 = a6 * b9 + a7 * b8 + a8 * b7 + a9 * b6;
+      long c16 = a7 * b9 + a8 * b8 + a9 * b7;
+      long c17 = a8 * b9 + a9 * b8;
+      long c18 = a9 * b9;
+
+      reduce512(r, c0, c1, c2, c3, c4, c5, c6, c7, c8, c9, c10, c11, c12, c13, c14, c15, c16, c17, c18);
+   }
+
+   /**
+    * Calculate a * a. This saves almost half of the limb multiplications
+    * compared to {@link #mul(int[], int[], int[])}.
+    */
+   public static void sqr(int[] r, int[] a) {
+      long a0 = a[0], a1 = a[1], a2 = a[2], a3 = a[3], a4 = a[4];
+      long a5 = a[5], a6 = a[6], a7 = a[7], a8 = a[8], a9 = a[9];
+
+      // Schoolbook multiplication into 19 coefficients of 2^(26 * k)
+      long c0 = a0 * a0;
+      long c1 = 2 * a0 * a1;
+      long c2 = 2 * a0 * a2 + a1 * a1;
+      long c3 = 2 * a0 * a3 + 2 * a1 * a2;
+      long c4 = 2 * a0 * a4 + 2 * a1 * a3 + a2 * a2;
+      long c5 = 2 * a0 * a5 + 2 * a1 * a4 + 2 * a2 * a3;
+      long c6 = 2 * a0 * a6 + 2 * a1 * a5 + 2 * a2 * a4 + a3 * a3;
+      long c7 = 2 * a0 * a7 + 2 * a1 * a6 + 2 * a2 * a5 + 2 * a3 * a4;
+      long c8 = 2 * a0 * a8 + 2 * a1 * a7 + 2 * a2 * a6 + 2 * a3 * a5 + a4 * a4;
+      long c9 = 2 * a0 * a9 + 2 * a1 * a8 + 2 * a2 * a7 + 2 * a3 * a6 + 2 * a4 * a5;
+      long c10 = 2 * a1 * a9 + 2 * a2 * a8 + 2 * a3 * a7 + 2 * a4 * a6 + a5 * a5;
+      long c11 = 2 * a2 * a9 + 2 * a3 * a8 + 2 * a4 * a7 + 2 * a5 * a6;
+      long c12 = 2 * a3 * a9 + 2 * a4 * a8 + 2 * a5 * a7 + a6 * a6;
+      long c13 = 2 * a4 * a9 + 2 * a5 * a8 + 2 * a6 * a7;
+      long c14 = 2 * a5 * a9 + 2 * a6 * a8 + a7 * a7;
+      long c15 = 2 * a6 * a9 + 2 * a7 * a8;
+      long c16 = 2 * a7 * a9 + a8 * a8;
+      long c17 = 2 * a8 * a9;
+      long c18 = a9 * a9;
+
+      reduce512(r, c0, c1, c2, c3, c4, c5, c6, c7, c8, c9, c10, c11, c12, c13, c14, c15, c16, c17, c18);
+   }
+
+   /**
+    * Reduce the 19 coefficients of a product into a field element.
+    * Coefficient k has the weight 2^(26 * k).
+    */
+   private static void reduce512(int[] r, long c0, long c1, long c2, long c3, long c4, long c5, long c6, long c7,
+         long c8, long c9, long c10, long c11, long c12, long c13, long c14, long c15, long c16, long c17, long c18) {
+      // Carry propagate so that every coefficient holds 26 bits
+      c1 += c0 >>> 26;
+      c0 &= M26;
+      c2 += c1 >>> 26;
+      c1 &= M26;
+      c3 += c2 >>> 26;
+      c2 &= M26;
+      c4 += c3 >>> 26;
+      c3 &= M26;
+      c5 += c4 >>> 26;
+      c4 &= M26;
+      c6 += c5 >>> 26;
+      c5 &= M26;
+      c7 += c6 >>> 26;
+      c6 &= M26;
+      c8 += c7 >>> 26;
+      c7 &= M26;
+      c9 += c8 >>> 26;
+      c8 &= M26;
+      c10 += c9 >>> 26;
+      c9 &= M26;
+      c11 += c10 >>> 26;
+      c10 &= M26;
+      c12 += c11 >>> 26;
+      c11 &= M26;
+      c13 += c12 >>> 26;
+      c12 &= M26;
+      c14 += c13 >>> 26;
+      c13 &= M26;
+      c15 += c14 >>> 26;
+      c14 &= M26;
+      c16 += c15 >>> 26;
+      c15 &= M26;
+      c17 += c16 >>> 26;
+      c16 &= M26;
+      c18 += c17 >>> 26;
+      c17 &= M26;
+      long c19 = c18 >>> 26;
+      c18 &= M26;
+
+      // Fold the upper half onto the lower half using 2^260 = 2^36 + 0x3D10
+      // (mod p). Coefficient 19 ends up at weight 2^260 and is folded twice.
+      long c20 = c19 << 10;
+      reduce(r, c0 + c10 * 0x3D10L + c20 * 0x3D10L, c1 + c11 * 0x3D10L + (c10 << 10) + (c20 << 10), c2 + c12
+            * 0x3D10L + (c11 << 10), c3 + c13 * 0x3D10L + (c12 << 10), c4 + c14 * 0x3D10L + (c13 << 10), c5 + c15
+            * 0x3D10L + (c14 << 10), c6 + c16 * 0x3D10L + (c15 << 10), c7 + c17 * 0x3D10L + (c16 << 10), c8 + c18
+            * 0x3D10L + (c17 << 10), c9 + c19 * 0x3D10L + (c18 << 10));
+   }
+
+   /**
+    * Carry propagate ten non-negative limbs of less than 2^62 into a weakly
+    * normalized field element, using 2^256 = 2^32 + 0x3D1 (mod p).
+    */
+   private static void reduce(int[] r, long t0, long t1, long t2, long t3, long t4, long t5, long t6, long t7,
+         long t8, long t9) {
+      long top;
+      for (int pass = 0; pass < 2; pass++) {
+         t1 += t0 >>> 26;
+         t0 &= M26;
+         t2 += t1 >>> 26;
+         t1 &= M26;
+         t3 += t2 >>> 26;
+         t2 &= M26;
+         t4 += t3 >>> 26;
+         t3 &= M26;
+         t5 += t4 >>> 26;
+         t4 &= M26;
+         t6 += t5 >>> 26;
+         t5 &= M26;
+         t7 += t6 >>> 26;
+         t6 &= M26;
+         t8 += t7 >>> 26;
+         t7 &= M26;
+         t9 += t8 >>> 26;
+         t8 &= M26;
+         top = t9 >>> 22;
+         t9 &= M22;
+         t0 += top * 0x3D1L;
+         t1 += top << 6;
+      }
+      // After two passes only limb 0 and 1 can exceed 26 bits, and the carry
+      // out of them can not reach past bit 256
+      t1 += t0 >>> 26;
+      t0 &= M26;
+      t2 += t1 >>> 26;
+      t1 &= M26;
+      t3 += t2 >>> 26;
+      t2 &= M26;
+      t4 += t3 >>> 26;
+      t3 &= M26;
+      t5 += t4 >>> 26;
+      t4 &= M26;
+      t6 += t5 >>> 26;
+      t5 &= M26;
+      t7 += t6 >>> 26;
+      t6 &= M26;
+      t8 += t7 >>> 26;
+      t7 &= M26;
+      t9 += t8 >>> 26;
+      t8 &= M26;
+      r[0] = (int) t0;
+      r[1] = (int) t1;
+      r[2] = (int) t2;
+      r[3] = (int) t3;
+      r[4] = (int) t4;
+      r[5] = (int) t5;
+      r[6] = (int) t6;
+      r[7] = (int) t7;
+      r[8] = (int) t8;
+      r[9] = (int) t9;
+   }
+
+   /**
+    * Square a field element n times.
+    */
+   private static void sqrN(int[] r, int[] a, int n) {
+      sqr(r, a);
+      for (int i = 1; i < n; i++) {
+         sqr(r, r);
+      }
+   }
+
+   /**
+    * Calculate the chain a^(2^223 - 1) shared by inversion and square root.
+    * Returns x2 = a^(2^2 - 1) in t2 and x22 = a^(2^22 - 1) in t22.
+    */
+   private static int[] x223(int[] a, int[] t2, int[] t22) {
+      int[] x3 = new int[LIMBS];
+      int[] t = new int[LIMBS];
+      int[] u = new int[LIMBS];
+      sqr(t2, a);
+      mul(t2, t2, a);
+      sqr(x3, t2);
+      mul(x3, x3, a);
+      // x6
+      sqrN(t, x3, 3);
+      mul(t, t, x3);
+      // x9
+      sqrN(t, t, 3);
+      mul(t, t, x3);
+      // x11
+      sqrN(t, t, 2);
+      mul(t, t, t2);
+      // x22
+      sqrN(t22, t, 11);
+      mul(t22, t22, t);
+      // x44
+      int[] x44 = new int[LIMBS];
+      sqrN(x44, t22, 22);
+      mul(x44, x44, t22);
+      // x88
+      sqrN(t, x44, 44);
+      mul(t, t, x44);
+      // x176
+      sqrN(u, t, 88);
+      mul(u, u, t);
+      // x220
+      sqrN(u, u, 44);
+      mul(u, u, x44);
+      // x223
+      sqrN(u, u, 3);
+      mul(u, u, x3);
+      return u;
+   }
+
+   /**
+    * Calculate the inverses of several field elements with a single field
+    * inversion and about 3N multiplications using Montgomery's trick. The
+    * inverse of zero is zero, as with {@link #invert(int[], int[])}.
+    *
+    * @param r
+    *           The field elements receiving the inverses, which may be the
+    *           same as the elements of a
+    * @param a
+    *           The field elements to invert
+    */
+   public static void invertAll(int[][] r, int[][] a) {
+      int count = a.length;
+      // prefix[i] holds the product of the non-zero elements before a[i]
+      int[][] prefix = new int[count][LIMBS];
+      int[] product = new int[LIMBS];
+      setInt(product, 1);
+      for (int i = 0; i < count; i++) {
+         copy(prefix[i], product);
+         if (!isZero(a[i])) {
+            mul(product, product, a[i]);
+         }
+      }
+      // Walk backwards keeping the inverse of the product of the non-zero
+      // elements up to and including a[i]
+      int[] inverse = new int[LIMBS];
+      int[] t = new int[LIMBS];
+      invert(inverse, product);
+      for (int i = count - 1; i >= 0; i--) {
+         if (isZero(a[i])) {
+            setInt(r[i], 0);
+            continue;
+         }
+         mul(t, inverse, prefix[i]);
+         mul(inverse, inverse, a[i]);
+         copy(r[i], t);
+      }
+   }
+
+   /**
+    * Calculate the inverse of a field element as a^(p - 2). The inverse of zero
+    * is zero.
+    */
+   public static void invert(int[] r, int[] a) {
+      int[] x2 = new int[LIMBS];
+      int[] x22 = new int[LIMBS];
+      int[] t = x223(a, x2, x22);
+      sqrN(t, t, 23);
+      mul(t, t, x22);
+      sqrN(t, t, 5);
+      mul(t, t, a);
+      sqrN(t, t, 3);
+      mul(t, t, x2);
+      sqrN(t, t, 2);
+      mul(r, t, a);
+   }
+
+   /**
+    * Calculate a square root of a field element as a^((p + 1) / 4).
+    *
+    * @return true if a has a square root, false otherwise
+    */
+   public static boolean sqrt(int[] r, int[] a) {
+      int[] x2 = new int[LIMBS];
+      int[] x22 = new int[LIMBS];
+      int[] t = x223(a, x2, x22);
+      sqrN(t, t, 23);
+      mul(t, t, x22);
+      sqrN(t, t, 6);
+      mul(t, t, x2);
+      sqrN(t, t, 2);
+      int[] check = new int[LIMBS];
+      sqr(check, t);
+      int[] aCopy = new int[LIMBS];
+      copy(aCopy, a);
+      copy(r, t);
+      return equals(check, aCopy);
+   }
+
+   /**
+    * Check the limb arithmetic against {@link BigInteger} arithmetic modulo p,
+    * for edge values and a fixed sequence of random values. Chains of
+    * operations are checked as well, so that unnormalized limbs left by one
+    * operation are fed to the next.
+    * 
+    * @return true iff the tests succeed
+    */
+   public static boolean testTestVectors() {
+      BigInteger two256 = BigInteger.ONE.shiftLeft(256);
+      Random random = new Random(0x5ecb256bL);
+      BigInteger[] values = new BigInteger[40];
+      values[0] = BigInteger.ZERO;
+      values[1] = BigInteger.ONE;
+      values[2] = BigInteger.valueOf(2);
+      values[3] = P.subtract(BigInteger.ONE);
+      values[4] = P.subtract(BigInteger.valueOf(2));
+      values[5] = BigInteger.ONE.shiftLeft(255);
+      values[6] = BigInteger.ONE.shiftLeft(26).subtract(BigInteger.ONE);
+      values[7] = two256.subtract(P);
+      for (int i = 8; i < values.length; i++) {
+         values[i] = new BigInteger(256, random).mod(P);
+      }
+
+      int[] r = create();
+      int[][] elements = new int[values.length][];
+      for (int i = 0; i < values.length; i++) {
+         BigInteger a = values[i];
+         int[] x = create(a);
+         elements[i] = x;
+         if (!toBigInteger(x).equals(a) || isZero(x) != (a.signum() == 0)) {
+            return false;
+         }
+         sqr(r, x);
+         if (!toBigInteger(r).equals(a.multiply(a).mod(P))) {
+            return false;
+         }
+         negate(r, x);
+         if (!toBigInteger(r).equals(a.negate().mod(P))) {
+            return false;
+         }
+         mulInt(r, x, 0x3FFFFFFF);
+         if (!toBigInteger(r).equals(a.multiply(BigInteger.valueOf(0x3FFFFFFF)).mod(P))) {
+            return false;
+         }
+         invert(r, x);
+         BigInteger inverse = a.signum() == 0 ? BigInteger.ZERO : a.modInverse(P);
+         if (!toBigInteger(r).equals(inverse)) {
+            return false;
+         }
+         // a has a square root iff a^((p - 1) / 2) is not -1
+         boolean isSquare = !a.modPow(P.shiftRight(1), P).equals(P.subtract(BigInteger.ONE));
+         if (sqrt(r, x) != isSquare || (isSquare && !toBigInteger(r).pow(2).mod(P).equals(a))) {
+            return false;
+         }
+         for (int j = 0; j < values.length; j++) {
+            BigInteger b = values[j];
+            int[] y = create(b);
+            mul(r, x, y);
+            if (!toBigInteger(r).equals(a.multiply(b).mod(P))) {
+               return false;
+            }
+            add(r, x, y);
+            if (!toBigInteger(r).equals(a.add(b).mod(P))) {
+               return false;
+            }
+            sub(r, x, y);
+            if (!toBigInteger(r).equals(a.subtract(b).mod(P))) {
+               return false;
+            }
+         }
+      }
+
+      // Values in [p, 2^256) are valid unnormalized elements
+      for (int i = 0; i < 8; i++) {
+         BigInteger a = i == 0 ? P : two256.subtract(BigInteger.valueOf(i));
+         byte[] bytes = EcTools.integerToBytes(a, 32);
+         int[] x = create();
+         setBytes(x, bytes, 0);
+         if (isZero(x) != (i == 0)) {
+            return false;
+         }
+         mul(r, x, x);
+         if (!toBigInteger(r).equals(a.multiply(a).mod(P)) || !toBigInteger(x).equals(a.mod(P))) {
+            return false;
+         }
+      }
+
+      // Chains of operations without normalizing in between
+      int[] acc = create(values[3]);
+      int[] t = create();
+      BigInteger expected = values[3];
+      for (int i = 0; i < 1000; i++) {
+         int[] x = elements[i % elements.length];
+         BigInteger a = values[i % values.length];
+         switch (i % 4) {
+         case 0:
+            mul(acc, acc, x);
+            expected = expected.multiply(a);
+            break;
+         case 1:
+            add(t, acc, x);
+            add(acc, t, t);
+            expected = expected.add(a).shiftLeft(1);
+            break;
+         case 2:
+            sub(acc, acc, x);
+            sqr(acc, acc);
+            expected = expected.subtract(a).pow(2);
+            break;
+         default:
+            negate(t, acc);
+            mulInt(acc, t, 7);
+            expected = expected.negate().multiply(BigInteger.valueOf(7));
+            break;
+         }
+         expected = expected.mod(P);
+      }
+      if (!toBigInteger(acc).equals(expected)) {
+         return false;
+      }
+
+      // Batch inversion, with a zero in the middle
+      int[][] inverses = new int[values.length][LIMBS];
+      invertAll(inverses, elements);
+      for (int i = 0; i < values.length; i++) {
+         BigInteger inverse = values[i].signum() == 0 ? BigInteger.ZERO : values[i].modInverse(P);
+         if (!toBigInteger(inverses[i]).equals(inverse)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+}
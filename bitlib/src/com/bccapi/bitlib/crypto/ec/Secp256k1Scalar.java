@@ -0,0 +1,1124 @@
+package com.bccapi.bitlib.crypto.ec;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Arithmetic modulo the order n of the secp256k1 group, as used for private
+ * keys, nonces and the ECDSA signature values r and s.
+ * <p>
+ * A scalar is an array of eight 32-bit limbs with the least significant limb
+ * first, and is always fully reduced to the range [0, n). Multiplication
+ * reduces the 512-bit product using 2^256 = c (mod n), where c = 2^256 - n
+ * has 129 bits, so no division is needed. Inversion uses the safegcd
+ * algorithm of Bernstein and Yang with a fixed number of iterations. All
+ * operations except {@link #invertAll} run in time independent of the values
+ * involved. invertAll skips zero scalars, so its timing reveals which of them
+ * are zero. Apart from inversion and batch inversion, no operation allocates.
+ * The result array may be the same as any of the operands.
+ */
+public final class Secp256k1Scalar {
+
+   public static final int LIMBS = 8;
+
+   private static final long M32 = 0xFFFFFFFFL;
+   private static final int M30 = 0x3FFFFFFF;
+
+   // The limbs of n
+   private static final int[] N = new int[] { 0xD0364141, 0xBFD25E8C, 0xAF48A03B, 0xBAAEDCE6, 0xFFFFFFFE,
+         0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF };
+
+   // The limbs of c = 2^256 - n, the fifth limb is 1
+   private static final long C0 = 0x2FC9BEBFL;
+   private static final long C1 = 0x402DA173L;
+   private static final long C2 = 0x50B75FC4L;
+   private static final long C3 = 0x45512319L;
+
+   // n in signed 30-bit limbs and its inverse modulo 2^30, used by inversion
+   private static final int[] N30 = toSigned30(N);
+   private static final int N30_INV = inverse30(N30[0]);
+
+   private Secp256k1Scalar() {
+   }
+
+   /**
+    * Create a new scalar with the value zero.
+    */
+   public static int[] create() {
+      return new int[LIMBS];
+   }
+
+   /**
+    * Create a new scalar from a non-negative big integer less than 2^256. The
+    * value is reduced modulo n.
+    */
+   public static int[] create(BigInteger x) {
+      int[] r = new int[LIMBS];
+      setBytes(r, EcTools.integerToBytes(x, 32), 0);
+      return r;
+   }
+
+   public static void copy(int[] r, int[] a) {
+      System.arraycopy(a, 0, r, 0, LIMBS);
+   }
+
+   public static void setInt(int[] r, int value) {
+      r[0] = value;
+      for (int i = 1; i < LIMBS; i++) {
+         r[i] = 0;
+      }
+   }
+
+   /**
+    * Set a scalar from 32 bytes in big endian order. The value is reduced
+    * modulo n.
+    *
+    * @return true if the value was larger than or equal to n
+    */
+   public static boolean setBytes(int[] r, byte[] bytes, int offset) {
+      for (int i = 0; i < LIMBS; i++) {
+         int p = offset + 28 - 4 * i;
+         r[i] = ((bytes[p] & 0xFF) << 24) | ((bytes[p + 1] & 0xFF) << 16) | ((bytes[p + 2] & 0xFF) << 8)
+               | (bytes[p + 3] & 0xFF);
+      }
+      return subtractIfNotLess(r);
+   }
+
+   /**
+    * Write a scalar as 32 bytes in big endian order.
+    */
+   public static void getBytes(int[] a, byte[] bytes, int offset) {
+      for (int i = 0; i < LIMBS; i++) {
+         int p = offset + 28 - 4 * i;
+         bytes[p] = (byte) (a[i] >>> 24);
+         bytes[p + 1] = (byte) (a[i] >>> 16);
+         bytes[p + 2] = (byte) (a[i] >>> 8);
+         bytes[p + 3] = (byte) a[i];
+      }
+   }
+
+   public static BigInteger toBigInteger(int[] a) {
+      byte[] bytes = new byte[32];
+      getBytes(a, bytes, 0);
+      return new BigInteger(1, bytes);
+   }
+
+   public static boolean isZero(int[] a) {
+      return (a[0] | a[1] | a[2] | a[3] | a[4] | a[5] | a[6] | a[7]) == 0;
+   }
+
+   public static void add(int[] r, int[] a, int[] b) {
+      long carry = 0;
+      for (int i = 0; i < LIMBS; i++) {
+         carry += (a[i] & M32) + (b[i] & M32);
+         r[i] = (int) carry;
+         carry >>>= 32;
+      }
+      finish(r, r[0] & M32, r[1] & M32, r[2] & M32, r[3] & M32, r[4] & M32, r[5] & M32, r[6] & M32, r[7] & M32,
+            carry);
+   }
+
+   /**
+    * Calculate n - a, or zero if a is zero.
+    */
+   public static void negate(int[] r, int[] a) {
+      int z = a[0] | a[1] | a[2] | a[3] | a[4] | a[5] | a[6] | a[7];
+      long mask = ((z | -z) >> 31) & M32;
+      long borrow = 0;
+      for (int i = 0; i < LIMBS; i++) {
+         long d = (N[i] & mask) - (a[i] & M32) - borrow;
+         r[i] = (int) d;
+         borrow = d >>> 63;
+      }
+   }
+
+   /**
+    * Multiply two scalars modulo n.
+    */
+   public static void mul(int[] r, int[] a, int[] b) {
+      long a0 = a[0] & M32;
+      long a1 = a[1] & M32;
+      long a2 = a[2] & M32;
+      long a3 = a[3] & M32;
+      long a4 = a[4] & M32;
+      long a5 = a[5] & M32;
+      long a6 = a[6] & M32;
+      long a7 = a[7] & M32;
+      long b0 = b[0] & M32;
+      long b1 = b[1] & M32;
+      long b2 = b[2] & M32;
+      long b3 = b[3] & M32;
+      long b4 = b[4] & M32;
+      long b5 = b[5] & M32;
+      long b6 = b[6] & M32;
+      long b7 = b[7] & M32;
+      long c0 = 0;
+      long c1 = 0;
+      long p;
+      p = a0 * b0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l0 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a0 * b1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a1 * b0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l1 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a0 * b2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a1 * b1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a2 * b0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l2 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a0 * b3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a1 * b2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a2 * b1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a3 * b0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l3 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a0 * b4;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a1 * b3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a2 * b2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a3 * b1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a4 * b0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l4 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a0 * b5;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a1 * b4;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a2 * b3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a3 * b2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a4 * b1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a5 * b0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l5 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a0 * b6;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a1 * b5;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a2 * b4;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a3 * b3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a4 * b2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a5 * b1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a6 * b0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l6 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a0 * b7;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a1 * b6;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a2 * b5;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a3 * b4;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a4 * b3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a5 * b2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a6 * b1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a7 * b0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l7 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a1 * b7;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a2 * b6;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a3 * b5;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a4 * b4;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a5 * b3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a6 * b2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a7 * b1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l8 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a2 * b7;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a3 * b6;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a4 * b5;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a5 * b4;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a6 * b3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a7 * b2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l9 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a3 * b7;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a4 * b6;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a5 * b5;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a6 * b4;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a7 * b3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l10 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a4 * b7;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a5 * b6;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a6 * b5;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a7 * b4;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l11 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a5 * b7;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a6 * b6;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a7 * b5;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l12 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a6 * b7;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = a7 * b6;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l13 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = a7 * b7;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long l14 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      long l15 = c0;
+      reduce(r, l0, l1, l2, l3, l4, l5, l6, l7, l8, l9, l10, l11, l12, l13, l14, l15);
+   }
+
+   /**
+    * Reduce a 512-bit value given as sixteen 32-bit limbs modulo n, using
+    * 2^256 = c (mod n) where c = 2^256 - n has 129 bits.
+    */
+   private static void reduce(int[] r, long l0, long l1, long l2, long l3, long l4, long l5, long l6, long l7,
+         long l8, long l9, long l10, long l11, long l12, long l13, long l14, long l15) {
+      long c0 = 0;
+      long c1 = 0;
+      long p;
+      // Fold the upper 256 bits: m = l[0..7] + l[8..15] * c, at most 386 bits
+      p = l8 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += l0;
+      long m0 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = l8 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l9 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += l1;
+      long m1 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = l8 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l9 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l10 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += l2;
+      long m2 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = l8 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l9 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l10 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l11 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += l3;
+      long m3 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += l8;
+      p = l9 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l10 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l11 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l12 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += l4;
+      long m4 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += l9;
+      p = l10 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l11 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l12 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l13 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += l5;
+      long m5 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += l10;
+      p = l11 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l12 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l13 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l14 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += l6;
+      long m6 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += l11;
+      p = l12 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l13 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l14 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l15 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += l7;
+      long m7 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += l12;
+      p = l13 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l14 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l15 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long m8 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += l13;
+      p = l14 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = l15 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long m9 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += l14;
+      p = l15 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      long m10 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += l15;
+      long m11 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      long m12 = c0;
+      // Fold the upper 130 bits: m = m[0..7] + m[8..12] * c, at most 260 bits
+      c0 = 0;
+      c1 = 0;
+      p = m8 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += m0;
+      long n0 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = m8 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = m9 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += m1;
+      long n1 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = m8 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = m9 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = m10 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += m2;
+      long n2 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = m8 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = m9 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = m10 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = m11 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += m3;
+      long n3 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += m8;
+      p = m9 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = m10 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = m11 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = m12 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += m4;
+      long n4 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += m9;
+      p = m10 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = m11 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = m12 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += m5;
+      long n5 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += m10;
+      p = m11 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      p = m12 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += m6;
+      long n6 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += m11;
+      p = m12 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += m7;
+      long n7 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += m12;
+      long n8 = c0;
+      // Fold the upper 4 bits: r = n[0..7] + n8 * c, at most 257 bits
+      c0 = 0;
+      c1 = 0;
+      p = n8 * C0;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += n0;
+      long t0 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = n8 * C1;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += n1;
+      long t1 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = n8 * C2;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += n2;
+      long t2 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      p = n8 * C3;
+      c0 += p & M32;
+      c1 += p >>> 32;
+      c0 += n3;
+      long t3 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += n8;
+      c0 += n4;
+      long t4 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += n5;
+      long t5 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += n6;
+      long t6 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      c0 += n7;
+      long t7 = c0 & M32;
+      c0 = (c0 >>> 32) + c1;
+      c1 = 0;
+      long t8 = c0;
+      finish(r, t0, t1, t2, t3, t4, t5, t6, t7, t8);
+   }
+
+   /**
+    * Finish a reduction of a value given as eight 32-bit limbs and a bit for
+    * 2^256. If that bit is set, the limbs must be small enough that adding c
+    * does not overflow.
+    */
+   private static void finish(int[] r, long t0, long t1, long t2, long t3, long t4, long t5, long t6, long t7,
+         long t8) {
+      // If the value overflowed 2^256 add c, the remainder is small enough
+      // that this cannot overflow again
+      long mask = -t8;
+      long carry = t0 + (C0 & mask);
+      r[0] = (int) carry;
+      carry = (carry >>> 32) + t1 + (C1 & mask);
+      r[1] = (int) carry;
+      carry = (carry >>> 32) + t2 + (C2 & mask);
+      r[2] = (int) carry;
+      carry = (carry >>> 32) + t3 + (C3 & mask);
+      r[3] = (int) carry;
+      carry = (carry >>> 32) + t4 + (1 & mask);
+      r[4] = (int) carry;
+      carry = (carry >>> 32) + t5;
+      r[5] = (int) carry;
+      carry = (carry >>> 32) + t6;
+      r[6] = (int) carry;
+      carry = (carry >>> 32) + t7;
+      r[7] = (int) carry;
+      subtractIfNotLess(r);
+   }
+
+   /**
+    * Subtract n from a value less than 2n if it is larger than or equal to n.
+    *
+    * @return true if n was subtracted
+    */
+   private static boolean subtractIfNotLess(int[] r) {
+      long borrow = 0;
+      for (int i = 0; i < LIMBS; i++) {
+         borrow = ((r[i] & M32) - (N[i] & M32) - borrow) >>> 63;
+      }
+      // borrow is 1 if r is less than n
+      long mask = (borrow - 1) & M32;
+      borrow = 0;
+      for (int i = 0; i < LIMBS; i++) {
+         long d = (r[i] & M32) - (N[i] & mask) - borrow;
+         r[i] = (int) d;
+         borrow = d >>> 63;
+      }
+      return mask != 0;
+   }
+
+   public static void sqr(int[] r, int[] a) {
+      mul(r, a, a);
+   }
+
+   /**
+    * Calculate the inverse of a scalar modulo n. The inverse of zero is zero.
+    * <p>
+    * This is the constant time variant of the safegcd algorithm by Bernstein
+    * and Yang, working on numbers in signed 30-bit limbs. Each of the 20
+    * iterations does 30 division steps on the low bits of f and g, and then
+    * applies the resulting transition matrix to the full numbers f and g and
+    * to the coefficients d and e. Since 600 division steps are always enough
+    * for 256-bit inputs, f ends up as 1 or -1 and d as the inverse up to its
+    * sign.
+    */
+   public static void invert(int[] r, int[] a) {
+      int[] d = new int[9];
+      int[] e = new int[9];
+      int[] f = N30.clone();
+      int[] g = toSigned30(a);
+      int[] t = new int[4];
+      e[0] = 1;
+      // zeta = -(delta + 1/2), where delta starts at 1/2
+      int zeta = -1;
+      for (int i = 0; i < 20; i++) {
+         zeta = divsteps30(zeta, f[0], g[0], t);
+         updateDe30(d, e, t);
+         updateFg30(f, g, t);
+      }
+      normalize30(d, f[8]);
+      fromSigned30(r, d);
+   }
+
+   /**
+    * Calculate the inverses of several scalars with a single inversion and
+    * about 3N multiplications using Montgomery's trick. The inverse of zero is
+    * zero. Zero scalars are skipped, so unlike the other operations this does
+    * not run in constant time with respect to which scalars are zero.
+    *
+    * @param r
+    *           The scalars receiving the inverses, which may be the same as
+    *           the elements of a
+    * @param a
+    *           The scalars to invert
+    */
+   public static void invertAll(int[][] r, int[][] a) {
+      int count = a.length;
+      // prefix[i] holds the product of the non-zero scalars before a[i]
+      int[][] prefix = new int[count][LIMBS];
+      int[] product = new int[LIMBS];
+      setInt(product, 1);
+      for (int i = 0; i < count; i++) {
+         copy(prefix[i], product);
+         if (!isZero(a[i])) {
+            mul(product, product, a[i]);
+         }
+      }
+      // Walk backwards keeping the inverse of the product of the non-zero
+      // scalars up to and including a[i]
+      int[] inverse = new int[LIMBS];
+      int[] t = new int[LIMBS];
+      invert(inverse, product);
+      for (int i = count - 1; i >= 0; i--) {
+         if (isZero(a[i])) {
+            setInt(r[i], 0);
+            continue;
+         }
+         mul(t, inverse, prefix[i]);
+         mul(inverse, inverse, a[i]);
+         copy(r[i], t);
+      }
+   }
+
+   /**
+    * Do 30 division steps on the low 30 bits of f and g, and store the
+    * transition matrix [u v; q r], scaled by 2^30, in t.
+    *
+    * @return The new value of zeta
+    */
+   private static int divsteps30(int zeta, int f0, int g0, int[] t) {
+      int u = 1;
+      int v = 0;
+      int q = 0;
+      int r = 1;
+      int f = f0;
+      int g = g0;
+      for (int i = 0; i < 30; i++) {
+         // c1 is -1 if zeta is negative, c2 is -1 if g is odd
+         int c1 = zeta >> 31;
+         int c2 = -(g & 1);
+         // Conditionally negate f, u and v, and add them to g, q and r if g
+         // is odd
+         int x = (f ^ c1) - c1;
+         int y = (u ^ c1) - c1;
+         int z = (v ^ c1) - c1;
+         g += x & c2;
+         q += y & c2;
+         r += z & c2;
+         // If both conditions hold, swap by adding back and negate zeta
+         c1 &= c2;
+         zeta = (zeta ^ c1) - 1;
+         f += g & c1;
+         u += q & c1;
+         v += r & c1;
+         g >>= 1;
+         u <<= 1;
+         v <<= 1;
+      }
+      t[0] = u;
+      t[1] = v;
+      t[2] = q;
+      t[3] = r;
+      return zeta;
+   }
+
+   /**
+    * Apply the transition matrix t to the coefficients d and e, adding
+    * multiples of n so that the results are divisible by 2^30 before dividing
+    * by 2^30. d and e stay in the range (-2n, n).
+    */
+   private static void updateDe30(int[] d, int[] e, int[] t) {
+      int u = t[0];
+      int v = t[1];
+      int q = t[2];
+      int r = t[3];
+      int sd = d[8] >> 31;
+      int se = e[8] >> 31;
+      int md = (u & sd) + (v & se);
+      int me = (q & sd) + (r & se);
+      int di = d[0];
+      int ei = e[0];
+      long cd = (long) u * di + (long) v * ei;
+      long ce = (long) q * di + (long) r * ei;
+      // Choose md and me so that the low 30 bits of cd and ce become zero
+      md -= (N30_INV * (int) cd + md) & M30;
+      me -= (N30_INV * (int) ce + me) & M30;
+      cd += (long) N30[0] * md;
+      ce += (long) N30[0] * me;
+      cd >>= 30;
+      ce >>= 30;
+      for (int i = 1; i < 9; i++) {
+         di = d[i];
+         ei = e[i];
+         cd += (long) u * di + (long) v * ei;
+         ce += (long) q * di + (long) r * ei;
+         cd += (long) N30[i] * md;
+         ce += (long) N30[i] * me;
+         d[i - 1] = (int) cd & M30;
+         cd >>= 30;
+         e[i - 1] = (int) ce & M30;
+         ce >>= 30;
+      }
+      d[8] = (int) cd;
+      e[8] = (int) ce;
+   }
+
+   /**
+    * Apply the transition matrix t to f and g and divide both by 2^30.
+    */
+   private static void updateFg30(int[] f, int[] g, int[] t) {
+      int u = t[0];
+      int v = t[1];
+      int q = t[2];
+      int r = t[3];
+      int fi = f[0];
+      int gi = g[0];
+      long cf = (long) u * fi + (long) v * gi;
+      long cg = (long) q * fi + (long) r * gi;
+      cf >>= 30;
+      cg >>= 30;
+      for (int i = 1; i < 9; i++) {
+         fi = f[i];
+         gi = g[i];
+         cf += (long) u * fi + (long) v * gi;
+         cg += (long) q * fi + (long) r * gi;
+         f[i - 1] = (int) cf & M30;
+         cf >>= 30;
+         g[i - 1] = (int) cg & M30;
+         cg >>= 30;
+      }
+      f[8] = (int) cf;
+      g[8] = (int) cg;
+   }
+
+   /**
+    * Bring a value in the range (-2n, n) to the range [0, n), negating it
+    * first if sign is negative.
+    */
+   private static void normalize30(int[] r, int sign) {
+      // Add n if the value is negative, then negate if requested
+      int condAdd = r[8] >> 31;
+      for (int i = 0; i < 9; i++) {
+         r[i] += N30[i] & condAdd;
+      }
+      int condNegate = sign >> 31;
+      for (int i = 0; i < 9; i++) {
+         r[i] = (r[i] ^ condNegate) - condNegate;
+      }
+      propagate30(r);
+      // Add n again if the value is still negative
+      condAdd = r[8] >> 31;
+      for (int i = 0; i < 9; i++) {
+         r[i] += N30[i] & condAdd;
+      }
+      propagate30(r);
+   }
+
+   private static void propagate30(int[] r) {
+      for (int i = 0; i < 8; i++) {
+         r[i + 1] += r[i] >> 30;
+         r[i] &= M30;
+      }
+   }
+
+   private static int[] toSigned30(int[] a) {
+      int[] r = new int[9];
+      long acc = 0;
+      int bits = 0;
+      int j = 0;
+      for (int i = 0; i < LIMBS; i++) {
+         acc |= (a[i] & M32) << bits;
+         bits += 32;
+         while (bits >= 30) {
+            r[j++] = (int) acc & M30;
+            acc >>>= 30;
+            bits -= 30;
+         }
+      }
+      r[j] = (int) acc;
+      return r;
+   }
+
+   private static void fromSigned30(int[] r, int[] a) {
+      long acc = 0;
+      int bits = 0;
+      int j = 0;
+      for (int i = 0; i < 9; i++) {
+         acc |= ((long) a[i]) << bits;
+         bits += 30;
+         while (bits >= 32 && j < LIMBS) {
+            r[j++] = (int) acc;
+            acc >>>= 32;
+            bits -= 32;
+         }
+      }
+   }
+
+   /**
+    * Calculate the inverse of an odd number modulo 2^30 by Newton iteration.
+    */
+   private static int inverse30(int a) {
+      int x = a;
+      for (int i = 0; i < 5; i++) {
+         x *= 2 - a * x;
+      }
+      return x & M30;
+   }
+
+   /**
+    * Check the limb arithmetic against {@link BigInteger} arithmetic modulo n,
+    * for edge values and a fixed sequence of random values.
+    * 
+    * @return true iff the tests succeed
+    */
+   public static boolean testTestVectors() {
+      BigInteger n = Parameters.n;
+      BigInteger two256 = BigInteger.ONE.shiftLeft(256);
+      Random random = new Random(0x5ca1a7L);
+      BigInteger[] values = new BigInteger[40];
+      values[0] = BigInteger.ZERO;
+      values[1] = BigInteger.ONE;
+      values[2] = BigInteger.valueOf(2);
+      values[3] = n.subtract(BigInteger.ONE);
+      values[4] = n.subtract(BigInteger.valueOf(2));
+      values[5] = n.shiftRight(1);
+      values[6] = BigInteger.ONE.shiftLeft(255);
+      values[7] = two256.subtract(n);
+      for (int i = 8; i < values.length; i++) {
+         values[i] = new BigInteger(256, random).mod(n);
+      }
+
+      // Values of n and above are reduced when they are set
+      BigInteger[] large = new BigInteger[] { n, n.add(BigInteger.ONE), two256.subtract(BigInteger.ONE),
+            two256.subtract(BigInteger.valueOf(2)) };
+      int[] r = create();
+      for (BigInteger a : large) {
+         if (!setBytes(r, EcTools.integerToBytes(a, 32), 0) || !toBigInteger(r).equals(a.mod(n))) {
+            return false;
+         }
+      }
+
+      int[][] elements = new int[values.length][];
+      for (int i = 0; i < values.length; i++) {
+         BigInteger a = values[i];
+         int[] x = create();
+         if (setBytes(x, EcTools.integerToBytes(a, 32), 0)) {
+            return false;
+         }
+         elements[i] = x;
+         if (!toBigInteger(x).equals(a) || isZero(x) != (a.signum() == 0)) {
+            return false;
+         }
+         sqr(r, x);
+         if (!toBigInteger(r).equals(a.multiply(a).mod(n))) {
+            return false;
+         }
+         negate(r, x);
+         if (!toBigInteger(r).equals(a.negate().mod(n))) {
+            return false;
+         }
+         invert(r, x);
+         BigInteger inverse = a.signum() == 0 ? BigInteger.ZERO : a.modInverse(n);
+         if (!toBigInteger(r).equals(inverse)) {
+            return false;
+         }
+         for (int j = 0; j < values.length; j++) {
+            BigInteger b = values[j];
+            mul(r, x, create(b));
+            if (!toBigInteger(r).equals(a.multiply(b).mod(n))) {
+               return false;
+            }
+            add(r, x, create(b));
+            if (!toBigInteger(r).equals(a.add(b).mod(n))) {
+               return false;
+            }
+         }
+      }
+
+      // A chain of operations, with the result fed back in place
+      int[] acc = create(values[9]);
+      BigInteger expected = values[9];
+      for (int i = 0; i < 1000; i++) {
+         int[] x = elements[i % elements.length];
+         BigInteger a = values[i % values.length];
+         if (i % 3 == 0) {
+            mul(acc, acc, x);
+            expected = expected.multiply(a);
+         } else if (i % 3 == 1) {
+            add(acc, acc, x);
+            sqr(acc, acc);
+            expected = expected.add(a).pow(2);
+         } else {
+            negate(acc, acc);
+            expected = expected.negate();
+         }
+         expected = expected.mod(n);
+      }
+      if (!toBigInteger(acc).equals(expected)) {
+         return false;
+      }
+
+      // Batch inversion, with a zero in the middle
+      int[][] inverses = new int[values.length][LIMBS];
+      invertAll(inverses, elements);
+      for (int i = 0; i < values.length; i++) {
+         BigInteger inverse = values[i].signum() == 0 ? BigInteger.ZERO : values[i].modInverse(n);
+         if (!toBigInteger(inverses[i]).equals(inverse)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+}
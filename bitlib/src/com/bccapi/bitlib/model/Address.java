@@ -10,11 +10,14 @@ import com.bccapi.bitlib.util.Base58;
 import com.bccapi.bitlib.util.BitUtils;
 import com.bccapi.bitlib.util.HashUtils;
 
+/**
+ * A Bitcoin address. Instances are immutable and may be shared between threads.
+ */
 public class Address implements Serializable {
 
    private static final long serialVersionUID = 1L;
 
-   private byte[] _bytes;
+   private final byte[] _bytes;
    private String _address;
 
    public static Collection<Address> fromStrings(Collection<String> addresses, NetworkParameters network) {
@@ -165,15 +168,18 @@ public class Address implements Serializable {
 
    @Override
    public String toString() {
-      if (_address == null) {
+      // Racy single check, strings are immutable so threads that race at
+      // worst encode the address more than once
+      String address = _address;
+      if (address == null) {
          byte[] addressBytes = new byte[1 + 20 + 4];
          addressBytes[0] = _bytes[0];
          System.arraycopy(_bytes, 0, addressBytes, 0, 21);
-         byte[] checkSum = HashUtils.doubleSha256(addressBytes, 0, 21);
-         System.arraycopy(checkSum, 0, addressBytes, 21, 4);
-         _address = Base58.encode(addressBytes);
+         HashUtils.checksum(addressBytes, 0, 21, addressBytes, 21);
+         address = Base58.encode(addressBytes);
+         _address = address;
       }
-      return _address;
+      return address;
    }
 
    @Override
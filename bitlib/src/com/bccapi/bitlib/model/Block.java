@@ -4,9 +4,12 @@ import com.bccapi.bitlib.model.Transaction.TransactionParsingException;
 import com.bccapi.bitlib.util.ByteReader;
 import com.bccapi.bitlib.util.ByteReader.InsufficientBytesException;
 import com.bccapi.bitlib.util.ByteWriter;
-import com.bccapi.bitlib.util.HashUtils;
 import com.bccapi.bitlib.util.Sha256Hash;
 
+/**
+ * A Bitcoin block. Like {@link Transaction} a block is immutable once created
+ * and may be shared between threads.
+ */
 public class Block {
 
    public static class BlockParsingException extends Exception {
@@ -25,26 +28,28 @@ public class Block {
    public static final int MAX_BLOCK_SIZE = 1000000;
 
    // Header
-   public int version;
-   public Sha256Hash prevBlockHash;
-   public Sha256Hash merkleRoot;
-   public int time;
-   public int difficultyTarget;
-   public int nonce;
+   public final int version;
+   public final Sha256Hash prevBlockHash;
+   public final Sha256Hash merkleRoot;
+   public final int time;
+   public final int difficultyTarget;
+   public final int nonce;
    // Transactions
-   public Transaction[] transactions;
+   public final Transaction[] transactions;
 
    private Sha256Hash _hash;
 
    public static Block fromBlockStore(ByteReader reader) throws BlockParsingException {
       try {
          // Parse header
+         int start = reader.getPosition();
          int version = reader.getIntLE();
          Sha256Hash prevBlockHash = reader.getSha256Hash(true);
          Sha256Hash merkleRoot = reader.getSha256Hash(true);
          int time = reader.getIntLE();
          int difficultyTarget = reader.getIntLE();
          int nonce = reader.getIntLE();
+         Sha256Hash hash = reader.getDoubleSha256Hash(start, true);
          // Parse transactions
          int numTransactions = (int) reader.getCompactInt();
          Transaction[] transactions = new Transaction[numTransactions];
@@ -55,7 +60,7 @@ public class Block {
                throw new BlockParsingException("Unable to parse transaction at index " + i + ": " + e.getMessage());
             }
          }
-         return new Block(version, prevBlockHash, merkleRoot, time, difficultyTarget, nonce, transactions);
+         return new Block(version, prevBlockHash, merkleRoot, time, difficultyTarget, nonce, transactions, hash);
       } catch (InsufficientBytesException e) {
          throw new BlockParsingException(e.getMessage());
       }
@@ -63,6 +68,11 @@ public class Block {
 
    public Block(int version, Sha256Hash prevBlockHash, Sha256Hash merkleRoot, int time, int difficultyTargetm,
          int nonce, Transaction[] transactions) {
+      this(version, prevBlockHash, merkleRoot, time, difficultyTargetm, nonce, transactions, null);
+   }
+
+   private Block(int version, Sha256Hash prevBlockHash, Sha256Hash merkleRoot, int time, int difficultyTargetm,
+         int nonce, Transaction[] transactions, Sha256Hash hash) {
       this.version = version;
       this.prevBlockHash = prevBlockHash;
       this.merkleRoot = merkleRoot;
@@ -70,6 +80,7 @@ public class Block {
       this.difficultyTarget = difficultyTargetm;
       this.nonce = nonce;
       this.transactions = transactions;
+      _hash = hash;
    }
 
    public void toByteWriter(ByteWriter writer) {
@@ -94,12 +105,19 @@ public class Block {
    }
 
    public Sha256Hash getHash() {
-      if (_hash == null) {
-         ByteWriter writer = new ByteWriter(2000);
+      // Racy single check, Sha256Hash is immutable so threads that race at
+      // worst calculate the same hash more than once
+      Sha256Hash hash = _hash;
+      if (hash == null) {
+         // The header is 80 bytes
+         ByteWriter writer = new ByteWriter(80);
          headerToByteWriter(writer);
-         _hash = new Sha256Hash(HashUtils.doubleSha256(writer.toBytes()), true);
+         byte[] bytes = new byte[Sha256Hash.HASH_LENGTH];
+         writer.doubleSha256(bytes, 0);
+         hash = new Sha256Hash(bytes, 0, true);
+         _hash = hash;
       }
-      return _hash;
+      return hash;
    }
 
    @Override
@@ -1,10 +1,8 @@
 package com.bccapi.bitlib.model;
 
-import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
-import com.bccapi.bitlib.util.BitUtils;
 import com.bccapi.bitlib.util.ByteReader;
 import com.bccapi.bitlib.util.ByteReader.InsufficientBytesException;
 
@@ -14,46 +12,35 @@ import com.bccapi.bitlib.util.ByteReader.InsufficientBytesException;
 public class CompactInt {
 
    /**
-    * Read a CompactInt from a byte buffer.
+    * Read a CompactInt from a byte buffer. The buffer is read in little endian
+    * order regardless of its byte order, which is left untouched.
     * 
     * @param buf
     *           The byte buffer to read from
     * @return the long value representing the CompactInt read or -1 if the
-    *         buffer is too small to hold the CompactInt.
-    * @throws IOException
+    *         buffer is too small to hold the CompactInt, in which case the
+    *         position of the buffer is not changed.
     */
    public static long fromByteBuffer(ByteBuffer buf) {
       if (buf.remaining() < 1) {
          // XXX make all callers check for -1
          return -1;
       }
-      long first = 0x00000000000000FFL & ((long) buf.get());
+      int position = buf.position();
+      int size = getSizeFromPrefix(buf.get(position));
+      if (buf.remaining() < size) {
+         return -1;
+      }
       long value;
-      if (first < 253) {
-         // Regard this byte as a 8 bit value.
-         value = 0x00000000000000FFL & ((long) first);
-      } else if (first == 253) {
-         // Regard the following two bytes as a 16 bit value
-         if (buf.remaining() < 2) {
-            return -1;
-         }
-         buf.order(ByteOrder.LITTLE_ENDIAN);
-         value = 0x0000000000FFFFL & ((long) buf.getShort());
-      } else if (first == 254) {
-         // Regard the following four bytes as a 32 bit value
-         if (buf.remaining() < 4) {
-            return -1;
-         }
-         buf.order(ByteOrder.LITTLE_ENDIAN);
-         value = 0x00000000FFFFFFFF & ((long) buf.getInt());
+      if (size == 1) {
+         value = buf.get(position) & 0xFFL;
       } else {
-         // Regard the following four bytes as a 64 bit value
-         if (buf.remaining() < 8) {
-            return -1;
+         value = 0;
+         for (int i = size - 1; i > 0; i--) {
+            value = (value << 8) | (buf.get(position + i) & 0xFFL);
          }
-         buf.order(ByteOrder.LITTLE_ENDIAN);
-         value = buf.getLong();
       }
+      buf.position(position + size);
       return value;
    }
 
@@ -77,16 +64,71 @@ public class CompactInt {
    }
 
    /**
-    * Write a long value to a {@code ByteBuffer} as a CompaceInt
+    * Read a CompactInt from a byte array. The caller must make sure that the
+    * array holds the number of bytes given by
+    * {@link #getSizeFromPrefix(byte)} for the first byte.
+    * 
+    * @param bytes
+    *           The array to read from.
+    * @param offset
+    *           The offset of the first byte of the CompactInt.
+    * @return the long value representing the CompactInt read.
+    */
+   public static long fromBytes(byte[] bytes, int offset) {
+      int size = getSizeFromPrefix(bytes[offset]);
+      if (size == 1) {
+         return bytes[offset] & 0xFFL;
+      }
+      long value = 0;
+      for (int i = size - 1; i > 0; i--) {
+         value = (value << 8) | (bytes[offset + i] & 0xFFL);
+      }
+      return value;
+   }
+
+   /**
+    * Get the total number of bytes of a CompactInt from its first byte.
+    * 
+    * @param first
+    *           The first byte of the CompactInt.
+    * @return 1, 3, 5 or 9
+    */
+   public static int getSizeFromPrefix(byte first) {
+      switch (first) {
+      case (byte) 253:
+         return 3;
+      case (byte) 254:
+         return 5;
+      case (byte) 255:
+         return 9;
+      default:
+         return 1;
+      }
+   }
+
+   /**
+    * Write a long value to a {@code ByteBuffer} as a CompaceInt. The value is
+    * written in little endian order regardless of the byte order of the
+    * buffer, which is left untouched.
     * 
     * @param value
     *           The value to write.
     * @param buf
     *           The buffer to write to.
-    * @throws IOException
+    * @throws BufferOverflowException
+    *            If the buffer does not have room for the CompactInt, in which
+    *            case nothing is written.
     */
    public static void toByteBuffer(long value, ByteBuffer buf) {
-      buf.put(toBytes(value));
+      int size = getSerializedSize(value);
+      if (buf.remaining() < size) {
+         throw new BufferOverflowException();
+      }
+      buf.put(prefix(size, value));
+      for (int i = 1; i < size; i++) {
+         buf.put((byte) value);
+         value >>>= 8;
+      }
    }
 
    /**
@@ -98,21 +140,68 @@ public class CompactInt {
     * @return an array of bytes.
     */
    public static byte[] toBytes(long value) {
+      byte[] bytes = new byte[getSerializedSize(value)];
+      toBytes(value, bytes, 0);
+      return bytes;
+   }
+
+   /**
+    * Write the CompactInt representation of a long value into a byte array
+    * without allocating.
+    * 
+    * @param value
+    *           The value to write.
+    * @param bytes
+    *           The array to write to. It must have room for
+    *           {@link #getSerializedSize(long)} bytes at the offset.
+    * @param offset
+    *           The offset to write the first byte at.
+    * @return the number of bytes written.
+    */
+   public static int toBytes(long value, byte[] bytes, int offset) {
+      int size = getSerializedSize(value);
+      bytes[offset] = prefix(size, value);
+      for (int i = 1; i < size; i++) {
+         bytes[offset + i] = (byte) value;
+         value >>>= 8;
+      }
+      return size;
+   }
+
+   /**
+    * Get the first byte of a CompactInt, which is the value itself for values
+    * that fit in one byte
+    */
+   private static byte prefix(int size, long value) {
+      switch (size) {
+      case 1:
+         return (byte) value;
+      case 3:
+         return (byte) 253;
+      case 5:
+         return (byte) 254;
+      default:
+         return (byte) 255;
+      }
+   }
+
+   /**
+    * Get the number of bytes used by the CompactInt representation of a long
+    * value, without encoding it.
+    * 
+    * @param value
+    *           The value to get the encoded size of.
+    * @return 1, 3, 5 or 9
+    */
+   public static int getSerializedSize(long value) {
       if (isLessThan(value, 253)) {
-         return new byte[] { (byte) value };
+         return 1;
       } else if (isLessThan(value, 65536)) {
-         return new byte[] { (byte) 253, (byte) (value), (byte) (value >> 8) };
+         return 3;
       } else if (isLessThan(value, 4294967295L)) {
-         byte[] bytes = new byte[5];
-         bytes[0] = (byte) 254;
-         BitUtils.uint32ToByteArrayLE(value, bytes, 1);
-         return bytes;
+         return 5;
       } else {
-         byte[] bytes = new byte[9];
-         bytes[0] = (byte) 255;
-         BitUtils.uint32ToByteArrayLE(value, bytes, 1);
-         BitUtils.uint32ToByteArrayLE(value >>> 32, bytes, 5);
-         return bytes;
+         return 9;
       }
    }
 
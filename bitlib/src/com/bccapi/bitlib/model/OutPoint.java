@@ -12,8 +12,8 @@ public class OutPoint implements Serializable {
    private static final long serialVersionUID = 1L;
    
    public static final OutPoint COINBASE_OUTPOINT = new OutPoint(Sha256Hash.ZERO_HASH, 0);
-   public Sha256Hash hash;
-   public int index;
+   public final Sha256Hash hash;
+   public final int index;
 
    public OutPoint(Sha256Hash hash, int index) {
       this.hash = hash;
@@ -80,8 +80,8 @@ public abstract class Script {
       OP_CODE_MAP.put(OP_NOP2, "OP_NOP2");
    }
    // protected byte[][] _chunks;
-   protected byte[] _scriptBytes;
-   private boolean _isCoinbase;
+   protected final byte[] _scriptBytes;
+   private final boolean _isCoinbase;
 
    // protected Script(byte[][] chunks) {
    // _chunks = chunks;
@@ -271,6 +271,14 @@ public abstract class Script {
       // return buf;
    }
 
+   /**
+    * Get the number of bytes the script takes in a transaction, which is the
+    * script bytes preceded by their length as a CompactInt
+    */
+   public int getSerializedSize() {
+      return CompactInt.getSerializedSize(_scriptBytes.length) + _scriptBytes.length;
+   }
+
    protected static final byte[] scriptEncodeChunks(byte[][] chunks) {
       byte[] buf = new byte[calculateByteSize(chunks)];
       int index = 0;
@@ -5,7 +5,7 @@ import com.bccapi.bitlib.util.ByteReader.InsufficientBytesException;
 
 public class ScriptInputPubKey extends ScriptInput {
 
-   private byte[] _signature;
+   private final byte[] _signature;
 
    protected ScriptInputPubKey(byte[][] chunks, byte[] scriptBytes) {
       super(scriptBytes);
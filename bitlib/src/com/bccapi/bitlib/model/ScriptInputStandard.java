@@ -5,8 +5,8 @@ import com.bccapi.bitlib.util.ByteReader.InsufficientBytesException;
 
 public class ScriptInputStandard extends ScriptInput {
 
-   private byte[] _signature;
-   private byte[] _publicKeyBytes;
+   private final byte[] _signature;
+   private final byte[] _publicKeyBytes;
 
    public ScriptInputStandard(byte[] signature, byte[] publicKeyBytes) {
       super(scriptEncodeChunks(new byte[][] { signature, publicKeyBytes }));
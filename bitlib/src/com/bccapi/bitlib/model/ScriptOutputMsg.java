@@ -8,8 +8,8 @@ import com.bccapi.bitlib.util.HashUtils;
 public class ScriptOutputMsg extends ScriptOutput implements Serializable {
    private static final long serialVersionUID = 1L;
 
-   private byte[] _messageBytes;
-   private byte[] _publicKeyBytes;
+   private final byte[] _messageBytes;
+   private final byte[] _publicKeyBytes;
 
    protected ScriptOutputMsg(byte[][] chunks, byte[] scriptBytes) {
       super(scriptBytes);
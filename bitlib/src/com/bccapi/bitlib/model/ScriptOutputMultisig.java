@@ -10,7 +10,7 @@ public class ScriptOutputMultisig extends ScriptOutput implements Serializable {
       _multisigAddressBytes = chunks[1];
    }
 
-   private byte[] _multisigAddressBytes;
+   private final byte[] _multisigAddressBytes;
 
    protected static boolean isScriptOutputMultisig(byte[][] chunks) {
       if (chunks.length != 3) {
@@ -7,7 +7,7 @@ import com.bccapi.bitlib.util.HashUtils;
 public class ScriptOutputPubkey extends ScriptOutput implements Serializable {
    private static final long serialVersionUID = 1L;
 
-   private byte[] _publicKeyBytes;
+   private final byte[] _publicKeyBytes;
 
    protected ScriptOutputPubkey(byte[][] chunks, byte[] scriptBytes) {
       super(scriptBytes);
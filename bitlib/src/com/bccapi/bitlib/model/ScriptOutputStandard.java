@@ -5,7 +5,7 @@ import java.io.Serializable;
 public class ScriptOutputStandard extends ScriptOutput implements Serializable {
    private static final long serialVersionUID = 1L;
 
-   private byte[] _addressBytes;
+   private final byte[] _addressBytes;
 
    protected ScriptOutputStandard(byte[][] chunks, byte[] scriptBytes) {
       super(scriptBytes);
@@ -5,9 +5,16 @@ import com.bccapi.bitlib.model.TransactionOutput.TransactionOutputParsingExcepti
 import com.bccapi.bitlib.util.ByteReader;
 import com.bccapi.bitlib.util.ByteReader.InsufficientBytesException;
 import com.bccapi.bitlib.util.ByteWriter;
-import com.bccapi.bitlib.util.HashUtils;
 import com.bccapi.bitlib.util.Sha256Hash;
 
+/**
+ * A Bitcoin transaction.
+ * <p>
+ * A transaction, its inputs and its outputs are immutable once created, and
+ * the transaction hash is calculated once on demand. A parsed transaction may
+ * therefore be shared between threads. The arrays of inputs and outputs must
+ * not be modified after the transaction has been created.
+ */
 public class Transaction {
 
    public static class TransactionParsingException extends Exception {
@@ -23,15 +30,18 @@ public class Transaction {
    }
 
    public static final int MIN_TRANSACTION_SIZE = 100;
-   public int version;
-   public TransactionInput[] inputs;
-   public TransactionOutput[] outputs;
-   public int lockTime;
+   public final int version;
+   public final TransactionInput[] inputs;
+   public final TransactionOutput[] outputs;
+   public final int lockTime;
 
    private Sha256Hash _hash;
+   // Zero until calculated, no transaction is that small
+   private int _serializedSize;
 
    public static Transaction fromByteReader(ByteReader reader) throws TransactionParsingException {
       try {
+         int start = reader.getPosition();
          int version = reader.getIntLE();
          int numInputs = (int) reader.getCompactInt();
          TransactionInput[] inputs = new TransactionInput[numInputs];
@@ -54,8 +64,15 @@ public class Transaction {
             }
          }
          int lockTime = reader.getIntLE();
-         Transaction t = new Transaction(version, inputs, outputs, lockTime);
-         return t;
+         Transaction transaction = new Transaction(version, inputs, outputs, lockTime);
+         // A CompactInt may be encoded in more bytes than needed, so the size
+         // is calculated from the fields. If the bytes just parsed are as long
+         // as that, they are exactly what toBytes() writes, and the hash is
+         // calculated from them rather than by serializing again when needed.
+         if (reader.getPosition() - start == transaction.getSerializedSize()) {
+            transaction._hash = reader.getDoubleSha256Hash(start, true);
+         }
+         return transaction;
       } catch (InsufficientBytesException e) {
          throw new TransactionParsingException(e.getMessage());
       }
@@ -71,7 +88,7 @@ public class Transaction {
    }
 
    public byte[] toBytes() {
-      ByteWriter writer = new ByteWriter(1024);
+      ByteWriter writer = new ByteWriter(getSerializedSize());
       toByteWriter(writer);
       return writer.toBytes();
    }
@@ -96,13 +113,43 @@ public class Transaction {
       this.lockTime = lockTime;
    }
 
+   /**
+    * Get the number of bytes written by {@link #toByteWriter(ByteWriter)}.
+    * It is calculated from the sizes of the parts rather than by serializing,
+    * and remembered.
+    */
+   public int getSerializedSize() {
+      // Racy single check, threads that race at worst calculate the same
+      // value more than once
+      int size = _serializedSize;
+      if (size == 0) {
+         size = 4 + CompactInt.getSerializedSize(inputs.length);
+         for (TransactionInput input : inputs) {
+            size += input.getSerializedSize();
+         }
+         size += CompactInt.getSerializedSize(outputs.length);
+         for (TransactionOutput output : outputs) {
+            size += output.getSerializedSize();
+         }
+         size += 4;
+         _serializedSize = size;
+      }
+      return size;
+   }
+
    public Sha256Hash getHash() {
-      if (_hash == null) {
-         ByteWriter writer = new ByteWriter(2000);
+      // Racy single check, Sha256Hash is immutable so threads that race at
+      // worst calculate the same hash more than once
+      Sha256Hash hash = _hash;
+      if (hash == null) {
+         ByteWriter writer = ByteWriter.createHashingWriter();
          toByteWriter(writer);
-         _hash = new Sha256Hash(HashUtils.doubleSha256(writer.toBytes()), true);
+         byte[] bytes = new byte[Sha256Hash.HASH_LENGTH];
+         writer.doubleSha256(bytes, 0);
+         hash = new Sha256Hash(bytes, 0, true);
+         _hash = hash;
       }
-      return _hash;
+      return hash;
    }
 
    @Override
@@ -23,9 +23,9 @@ public class TransactionInput {
 
    private static final int NO_SEQUENCE = -1;
 
-   public OutPoint outPoint;
-   public ScriptInput script;
-   public int sequence;
+   public final OutPoint outPoint;
+   public final ScriptInput script;
+   public final int sequence;
 
    public static TransactionInput fromByteReader(ByteReader reader) throws TransactionInputParsingException {
       try {
@@ -67,6 +67,14 @@ public class TransactionInput {
       return script;
    }
 
+   /**
+    * Get the number of bytes written by {@link #toByteWriter(ByteWriter)}
+    */
+   public int getSerializedSize() {
+      // Outpoint hash and index, script and sequence
+      return Sha256Hash.HASH_LENGTH + 4 + script.getSerializedSize() + 4;
+   }
+
    public void toByteWriter(ByteWriter writer) {
       writer.putSha256Hash(outPoint.hash, true);
       writer.putIntLE(outPoint.index);
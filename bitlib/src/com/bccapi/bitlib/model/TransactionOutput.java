@@ -19,8 +19,8 @@ public class TransactionOutput {
       }
    }
 
-	public long value;
-	public ScriptOutput script;
+	public final long value;
+	public final ScriptOutput script;
 
 	public static TransactionOutput fromByteReader(ByteReader reader) throws TransactionOutputParsingException {
 	   try {
@@ -44,8 +44,16 @@ public class TransactionOutput {
 		this.script = script;
 	}
 
+	/**
+	 * Get the number of bytes written by {@link #toByteWriter(ByteWriter)}
+	 */
+	public int getSerializedSize() {
+		// Value and script
+		return 8 + script.getSerializedSize();
+	}
+
 	public byte[] toBytes() {
-		ByteWriter writer = new ByteWriter(1024);
+		ByteWriter writer = new ByteWriter(getSerializedSize());
 		toByteWriter(writer);
 		return writer.toBytes();
 	}
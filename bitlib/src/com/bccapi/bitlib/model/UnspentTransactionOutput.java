@@ -6,6 +6,7 @@ import com.bccapi.bitlib.model.Script.ScriptParsingException;
 import com.bccapi.bitlib.util.ByteReader;
 import com.bccapi.bitlib.util.ByteReader.InsufficientBytesException;
 import com.bccapi.bitlib.util.ByteWriter;
+import com.bccapi.bitlib.util.Sha256Hash;
 
 public class UnspentTransactionOutput implements Serializable {
    private static final long serialVersionUID = 1L;
@@ -31,8 +32,17 @@ public class UnspentTransactionOutput implements Serializable {
       this.script = script;
    }
 
+   /**
+    * Get the number of bytes written by {@link #toByteWriter(ByteWriter)}
+    */
+   public int getSerializedSize() {
+      // Outpoint hash and index, height, value and script
+      return Sha256Hash.HASH_LENGTH + CompactInt.getSerializedSize(outPoint.index) + 4 + 8
+            + script.getSerializedSize();
+   }
+
    public byte[] toBytes() {
-      ByteWriter writer = new ByteWriter(1024);
+      ByteWriter writer = new ByteWriter(getSerializedSize());
       toByteWriter(writer);
       return writer.toBytes();
    }
@@ -0,0 +1,79 @@
+package com.bccapi.bitlib.model;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+import com.bccapi.bitlib.util.OutPointMap;
+
+/**
+ * A set of unspent transaction outputs. Like the equality of
+ * {@link UnspentTransactionOutput} it is keyed by outpoint, and it is backed
+ * by an {@link OutPointMap}, which stores the outpoints inline rather than as
+ * entry, hash and array objects.
+ */
+public class UnspentTransactionOutputSet extends AbstractSet<UnspentTransactionOutput> {
+
+   private final OutPointMap<UnspentTransactionOutput> _map;
+
+   public UnspentTransactionOutputSet() {
+      this(0);
+   }
+
+   public UnspentTransactionOutputSet(int expectedSize) {
+      _map = new OutPointMap<UnspentTransactionOutput>(expectedSize);
+   }
+
+   public UnspentTransactionOutputSet(Collection<UnspentTransactionOutput> outputs) {
+      this(outputs.size());
+      addAll(outputs);
+   }
+
+   /**
+    * Get the output with a specific outpoint, or null if it is not in the set
+    */
+   public UnspentTransactionOutput get(OutPoint outPoint) {
+      return _map.get(outPoint);
+   }
+
+   @Override
+   public Iterator<UnspentTransactionOutput> iterator() {
+      return _map.values().iterator();
+   }
+
+   @Override
+   public int size() {
+      return _map.size();
+   }
+
+   @Override
+   public boolean contains(Object object) {
+      if (!(object instanceof UnspentTransactionOutput)) {
+         return false;
+      }
+      return _map.containsKey(((UnspentTransactionOutput) object).outPoint);
+   }
+
+   @Override
+   public boolean add(UnspentTransactionOutput output) {
+      if (_map.containsKey(output.outPoint)) {
+         return false;
+      }
+      _map.put(output.outPoint, output);
+      return true;
+   }
+
+   @Override
+   public boolean remove(Object object) {
+      if (!(object instanceof UnspentTransactionOutput)) {
+         return false;
+      }
+      return _map.remove(((UnspentTransactionOutput) object).outPoint) != null;
+   }
+
+   @Override
+   public void clear() {
+      _map.clear();
+   }
+
+}
@@ -22,7 +22,6 @@ package com.bccapi.bitlib.util;
 
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
-import java.util.Arrays;
 
 /**
  * <p>
@@ -163,16 +162,16 @@ public class Base58 {
       if (tmp == null || tmp.length < 4) {
          return null;
       }
-      byte[] bytes = copyOfRange(tmp, 0, tmp.length - 4);
-      byte[] checksum = copyOfRange(tmp, tmp.length - 4, tmp.length);
-
-      tmp = HashUtils.doubleSha256(bytes);
-      byte[] hash = copyOfRange(tmp, 0, 4);
-      if (!Arrays.equals(checksum, hash)) {
-         return null;
+      int length = tmp.length - 4;
+      byte[] checksum = new byte[4];
+      HashUtils.checksum(tmp, 0, length, checksum, 0);
+      for (int i = 0; i < 4; i++) {
+         if (checksum[i] != tmp[length + i]) {
+            return null;
+         }
       }
 
-      return bytes;
+      return copyOfRange(tmp, 0, length);
    }
 
    //
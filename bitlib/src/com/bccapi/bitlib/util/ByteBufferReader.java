@@ -0,0 +1,152 @@
+package com.bccapi.bitlib.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import com.bccapi.bitlib.model.CompactInt;
+
+/**
+ * A {@link ByteReader} that reads from a {@link ByteBuffer} rather than from a
+ * byte array. On a direct or memory mapped buffer, blocks and transactions can
+ * be parsed straight from a file such as a blkNNNNN.dat file without loading
+ * it onto the heap. Hashes are read directly from the buffer, and slices are
+ * views of it. Only fields returned as byte arrays are copied.
+ * <p>
+ * Positions are indexes into the buffer. The reader works on a duplicate of
+ * the buffer, so the position of the buffer passed in is not changed.
+ */
+public class ByteBufferReader extends ByteReader {
+
+   private final ByteBuffer _buffer;
+   private final int _start;
+
+   /**
+    * Create a reader for the bytes between the position and the limit of a
+    * buffer
+    */
+   public ByteBufferReader(ByteBuffer buffer) {
+      _buffer = buffer.duplicate();
+      _buffer.order(ByteOrder.LITTLE_ENDIAN);
+      _start = _buffer.position();
+   }
+
+   /**
+    * Map a file into memory read-only and create a reader for it. The mapping
+    * stays valid until the reader is garbage collected.
+    */
+   public static ByteBufferReader map(File file) throws IOException {
+      FileInputStream stream = new FileInputStream(file);
+      try {
+         FileChannel channel = stream.getChannel();
+         return new ByteBufferReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      } finally {
+         stream.close();
+      }
+   }
+
+   @Override
+   public byte get() throws InsufficientBytesException {
+      checkAvailable(1);
+      return _buffer.get();
+   }
+
+   @Override
+   public int getShortLE() throws InsufficientBytesException {
+      checkAvailable(2);
+      return _buffer.getShort() & 0xFFFF;
+   }
+
+   @Override
+   public int getIntLE() throws InsufficientBytesException {
+      checkAvailable(4);
+      return _buffer.getInt();
+   }
+
+   @Override
+   public long getLongLE() throws InsufficientBytesException {
+      checkAvailable(8);
+      return _buffer.getLong();
+   }
+
+   @Override
+   public long getCompactInt() throws InsufficientBytesException {
+      // Check the whole CompactInt up front, so a truncated one is not
+      // mistaken for -1
+      checkAvailable(1);
+      checkAvailable(CompactInt.getSizeFromPrefix(_buffer.get(_buffer.position())));
+      return CompactInt.fromByteBuffer(_buffer);
+   }
+
+   @Override
+   public byte[] getBytes(int size) throws InsufficientBytesException {
+      checkAvailable(size);
+      byte[] bytes = new byte[size];
+      _buffer.get(bytes);
+      return bytes;
+   }
+
+   @Override
+   public ByteBuffer getSlice(int size) throws InsufficientBytesException {
+      checkAvailable(size);
+      ByteBuffer slice = _buffer.slice();
+      slice.limit(size);
+      _buffer.position(_buffer.position() + size);
+      return slice;
+   }
+
+   @Override
+   public void skip(int num) throws InsufficientBytesException {
+      checkAvailable(num);
+      _buffer.position(_buffer.position() + num);
+   }
+
+   /**
+    * Move back to the position the buffer had when the reader was created
+    */
+   @Override
+   public void reset() {
+      _buffer.position(_start);
+   }
+
+   @Override
+   public Sha256Hash getSha256Hash(boolean reverse) throws InsufficientBytesException {
+      checkAvailable(Sha256Hash.HASH_LENGTH);
+      return new Sha256Hash(_buffer, reverse);
+   }
+
+   @Override
+   public Sha256Hash getDoubleSha256Hash(int from, boolean reverse) {
+      ByteBuffer data = _buffer.duplicate();
+      data.limit(data.position());
+      data.position(from);
+      byte[] hash = new byte[Sha256Hash.HASH_LENGTH];
+      HashUtils.doubleSha256(data, ByteBuffer.wrap(hash));
+      return new Sha256Hash(hash, 0, reverse);
+   }
+
+   @Override
+   public int getPosition() {
+      return _buffer.position();
+   }
+
+   @Override
+   public void setPosition(int index) {
+      _buffer.position(index);
+   }
+
+   @Override
+   public int available() {
+      return _buffer.remaining();
+   }
+
+   private void checkAvailable(int num) throws InsufficientBytesException {
+      if (_buffer.remaining() < num || num < 0) {
+         throw INSUFFICIENT_BYTES;
+      }
+   }
+
+}
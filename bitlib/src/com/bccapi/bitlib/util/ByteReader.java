@@ -1,16 +1,40 @@
 package com.bccapi.bitlib.util;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 import com.bccapi.bitlib.model.CompactInt;
 
 public class ByteReader {
 
+   /**
+    * Thrown when there are fewer bytes left than a read needs. Truncated and
+    * garbage data from the network hits this all the time, so the exception
+    * records no stack trace and readers throw a single shared instance rather
+    * than allocating one for every failure.
+    */
    public static class InsufficientBytesException extends Exception {
 
       private static final long serialVersionUID = 1L;
+
+      @Override
+      public synchronized Throwable fillInStackTrace() {
+         return this;
+      }
+
+      /**
+       * The cause is ignored, so the shared instance cannot carry it from one
+       * failure to the next. addSuppressed is final and cannot be disabled
+       * this way, but nothing in the library calls it.
+       */
+      @Override
+      public synchronized Throwable initCause(Throwable cause) {
+         return this;
+      }
    }
 
+   protected static final InsufficientBytesException INSUFFICIENT_BYTES = new InsufficientBytesException();
+
    private static final Charset UTF8_CHARSET = Charset.forName("UTF8");
    
    private byte[] _buf;
@@ -26,6 +50,20 @@ public class ByteReader {
       _index = index;
    }
 
+   /**
+    * For readers that read from something other than a byte array, such as
+    * {@link ByteBufferReader}. Such a reader has no array, so it must override
+    * every method that reads bytes or uses the position: get, getShortLE,
+    * getIntLE, getLongLE, getBytes, getSlice, skip, reset, getCompactInt,
+    * getSha256Hash(boolean), getDoubleSha256Hash, getPosition, setPosition
+    * and available. Any of them that is not overridden throws an
+    * UnsupportedOperationException.
+    */
+   protected ByteReader() {
+      _buf = null;
+      _index = 0;
+   }
+
    public byte get() throws InsufficientBytesException {
       checkAvailable(1);
       return _buf[_index++];
@@ -57,6 +95,17 @@ public class ByteReader {
       return bytes;
    }
 
+   /**
+    * Get a view of the next bytes without copying them. The view shares its
+    * content with the underlying buffer.
+    */
+   public ByteBuffer getSlice(int size) throws InsufficientBytesException {
+      checkAvailable(size);
+      ByteBuffer slice = ByteBuffer.wrap(_buf, _index, size).slice();
+      _index += size;
+      return slice;
+   }
+
    public String getString() throws InsufficientBytesException {
       int length = getIntLE();
       byte[] bytes = getBytes(length);
@@ -69,40 +118,90 @@ public class ByteReader {
    }
 
    public void reset() {
+      checkArray();
       _index = 0;
    }
 
+   /**
+    * Read a CompactInt straight from the array. Nothing is consumed if the
+    * CompactInt is truncated.
+    */
    public long getCompactInt() throws InsufficientBytesException {
-      return CompactInt.fromByteReader(this);
+      checkAvailable(1);
+      int size = CompactInt.getSizeFromPrefix(_buf[_index]);
+      checkAvailable(size);
+      long value = CompactInt.fromBytes(_buf, _index);
+      _index += size;
+      return value;
    }
 
    public Sha256Hash getSha256Hash() throws InsufficientBytesException {
-      return new Sha256Hash(getBytes(32));
+      return getSha256Hash(false);
    }
 
    public Sha256Hash getSha256Hash(boolean reverse) throws InsufficientBytesException {
       checkAvailable(32);
-      if (reverse) {
-         return new Sha256Hash(BitUtils.reverseBytes(getBytes(32)));
-      }
-      return new Sha256Hash(getBytes(32));
+      Sha256Hash hash = new Sha256Hash(_buf, _index, reverse);
+      _index += 32;
+      return hash;
+   }
+
+   /**
+    * Get the double SHA-256 of the bytes from a position up to the current
+    * position. The bytes are hashed where they are in the underlying buffer,
+    * which is how transaction and block hashes are captured while parsing.
+    *
+    * @param from
+    *           The position of the first byte to hash
+    * @param reverse
+    *           Whether to reverse the byte order of the hash
+    */
+   public Sha256Hash getDoubleSha256Hash(int from, boolean reverse) {
+      checkArray();
+      byte[] hash = new byte[Sha256Hash.HASH_LENGTH];
+      HashUtils.doubleSha256(_buf, from, _index - from, hash, 0);
+      return new Sha256Hash(hash, 0, reverse);
    }
 
    public int getPosition() {
+      checkArray();
       return _index;
    }
 
    public void setPosition(int index) {
+      checkArray();
       _index = index;
    }
 
-   public final int available() {
+   public int available() {
+      checkArray();
       return _buf.length - _index;
    }
 
+   /**
+    * Determine whether a number of bytes can be read, for parsers that would
+    * rather check up front than catch {@link InsufficientBytesException}
+    */
+   public boolean hasAvailable(int num) {
+      return num >= 0 && available() >= num;
+   }
+
    private final void checkAvailable(int num) throws InsufficientBytesException {
-      if (_buf.length - _index < num) {
-         throw new InsufficientBytesException();
+      checkArray();
+      // A negative size comes from a corrupt length field
+      if (_buf.length - _index < num || num < 0) {
+         throw INSUFFICIENT_BYTES;
+      }
+   }
+
+   /**
+    * Fail with a clear error rather than a NullPointerException when a reader
+    * without an array does not override a method that needs it
+    */
+   private final void checkArray() {
+      if (_buf == null) {
+         throw new UnsupportedOperationException(getClass().getName()
+               + " must override every ByteReader method that reads from the array");
       }
    }
 }
@@ -1,34 +1,107 @@
 package com.bccapi.bitlib.util;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
 
 import com.bccapi.bitlib.model.CompactInt;
 
+/**
+ * Writes values to a growing byte array, or streams them into a SHA-256
+ * digest.
+ * <p>
+ * A writer created with {@link #createHashingWriter()} does not keep what is
+ * written. Whenever its small buffer fills up the buffered bytes are fed to
+ * the digest, so an object of any size can be hashed while it is being
+ * encoded without building its serialization first.
+ * <p>
+ * A writer created with {@link #createCountingWriter()} keeps nothing and only
+ * counts, which gives the exact size of an object before it is written into a
+ * buffer of that size. Writers may be recycled with {@link #reset()}, and the
+ * bytes written may be sent to a stream, channel or buffer without copying
+ * them into a new array first.
+ */
 final public class ByteWriter {
 
    private static final Charset UTF8_CHARSET = Charset.forName("UTF8");
+   private static final int HASHING_BUFFER_SIZE = 512;
 
    private byte[] _buf;
    private int _index;
+   // Whether _buf is also referenced outside the writer, and must not be
+   // written over or handed out again
+   private boolean _bufShared;
+   // Whether the bytes are passed on or dropped rather than kept
+   private final boolean _streaming;
+   // The digest bytes are passed on to, null for a counting writer
+   private final MessageDigest _sink;
+   private long _flushed;
 
    public ByteWriter(int capacity) {
       _buf = new byte[capacity];
       _index = 0;
+      _streaming = false;
+      _sink = null;
    }
 
    public ByteWriter(byte[] buf) {
       _buf = buf;
       _index = buf.length;
+      _streaming = false;
+      _sink = null;
+      _bufShared = true;
+   }
+
+   private ByteWriter(MessageDigest sink) {
+      _buf = new byte[HASHING_BUFFER_SIZE];
+      _index = 0;
+      _streaming = true;
+      _sink = sink;
+   }
+
+   /**
+    * Create a writer that feeds everything written to a SHA-256 digest instead
+    * of keeping it. Finish the hash with {@link #doubleSha256(byte[], int)}.
+    */
+   public static ByteWriter createHashingWriter() {
+      return new ByteWriter(HashUtils.createSha256());
+   }
+
+   /**
+    * Create a writer that only counts the bytes written. Use it to find the
+    * exact size of an object, then serialize the object once into a writer of
+    * that capacity.
+    */
+   public static ByteWriter createCountingWriter() {
+      return new ByteWriter((MessageDigest) null);
    }
 
    final private void ensureCapacity(int capacity) {
       if (_buf.length - _index < capacity) {
+         if (_streaming) {
+            flush();
+            if (_buf.length >= capacity) {
+               return;
+            }
+         }
          byte[] temp = new byte[_buf.length * 2 + capacity];
          System.arraycopy(_buf, 0, temp, 0, _index);
          _buf = temp;
+         _bufShared = false;
       }
    }
 
+   private void flush() {
+      if (_sink != null) {
+         _sink.update(_buf, 0, _index);
+      }
+      _flushed += _index;
+      _index = 0;
+   }
+
    public void put(byte b) {
       ensureCapacity(1);
       _buf[_index++] = b;
@@ -61,31 +134,40 @@ final public class ByteWriter {
    }
 
    public void putBytes(byte[] value) {
-      ensureCapacity(value.length);
-      System.arraycopy(value, 0, _buf, _index, value.length);
-      _index += value.length;
+      putBytes(value, 0, value.length);
    }
 
    public void putBytes(byte[] value, int offset, int length) {
+      if (_streaming && _buf.length - _index < length) {
+         // Feed large values straight to the digest
+         flush();
+         if (length > _buf.length) {
+            if (_sink != null) {
+               _sink.update(value, offset, length);
+            }
+            _flushed += length;
+            return;
+         }
+      }
       ensureCapacity(length);
       System.arraycopy(value, offset, _buf, _index, length);
       _index += length;
    }
 
    public void putCompactInt(long value) {
-      putBytes(CompactInt.toBytes(value));
+      // Encoded in place rather than through an intermediate array
+      ensureCapacity(CompactInt.getSerializedSize(value));
+      _index += CompactInt.toBytes(value, _buf, _index);
    }
 
    public void putSha256Hash(Sha256Hash hash) {
-      putBytes(hash.getBytes());
+      putSha256Hash(hash, false);
    }
 
    public void putSha256Hash(Sha256Hash hash, boolean reverse) {
-      if (reverse) {
-         putBytes(BitUtils.reverseBytes(hash.getBytes()));
-      } else {
-         putBytes(hash.getBytes());
-      }
+      ensureCapacity(Sha256Hash.HASH_LENGTH);
+      hash.getBytes(_buf, _index, reverse);
+      _index += Sha256Hash.HASH_LENGTH;
    }
 
    public void putString(String s) {
@@ -94,13 +176,99 @@ final public class ByteWriter {
       putBytes(bytes);
    }
 
+   /**
+    * Calculate the double SHA-256 of the bytes written so far and write the 32
+    * byte result to an output buffer, without copying the written bytes. A
+    * hashing writer is reset and may be used again afterwards.
+    */
+   public void doubleSha256(byte[] out, int outOffset) {
+      if (!_streaming) {
+         HashUtils.doubleSha256(_buf, 0, _index, out, outOffset);
+      } else if (_sink == null) {
+         throw new IllegalStateException("A counting writer does not keep the bytes written");
+      } else {
+         flush();
+         HashUtils.finishDoubleSha256(_sink, out, outOffset);
+         _flushed = 0;
+      }
+   }
+
+   /**
+    * Get the bytes written so far. If the writer was created with exactly the
+    * capacity needed, such as the size given by a counting writer, its buffer
+    * is returned without copying.
+    *
+    * @throws IllegalStateException
+    *            If this is a hashing or counting writer, which does not keep
+    *            the bytes
+    */
    public byte[] toBytes() {
+      checkKept();
+      if (_index == _buf.length && !_bufShared) {
+         _bufShared = true;
+         return _buf;
+      }
       byte[] bytes = new byte[_index];
       System.arraycopy(_buf, 0, bytes, 0, _index);
       return bytes;
    }
 
+   /**
+    * Write the bytes written so far to a stream, without copying them first
+    */
+   public void writeTo(OutputStream stream) throws IOException {
+      checkKept();
+      stream.write(_buf, 0, _index);
+   }
+
+   /**
+    * Write the bytes written so far to a channel, without copying them first
+    */
+   public void writeTo(WritableByteChannel channel) throws IOException {
+      checkKept();
+      ByteBuffer buffer = ByteBuffer.wrap(_buf, 0, _index);
+      while (buffer.hasRemaining()) {
+         channel.write(buffer);
+      }
+   }
+
+   /**
+    * Put the bytes written so far into a buffer, such as a direct buffer
+    * about to be written to a socket. This copies them once, from the array
+    * of the writer into the buffer.
+    */
+   public void writeTo(ByteBuffer buffer) {
+      checkKept();
+      buffer.put(_buf, 0, _index);
+   }
+
+   /**
+    * Forget the bytes written so far, so that the writer and its buffer can be
+    * used again. A hashing writer also resets its digest.
+    */
+   public void reset() {
+      if (_bufShared) {
+         // Do not write over an array that was handed out
+         _buf = new byte[_buf.length];
+         _bufShared = false;
+      }
+      _index = 0;
+      _flushed = 0;
+      if (_sink != null) {
+         _sink.reset();
+      }
+   }
+
+   private void checkKept() {
+      if (_streaming) {
+         throw new IllegalStateException("A hashing or counting writer does not keep the bytes written");
+      }
+   }
+
+   /**
+    * Get the number of bytes written so far
+    */
    public int length() {
-      return _index;
+      return (int) (_flushed + _index);
    }
 }
@@ -16,10 +16,13 @@
 
 package com.bccapi.bitlib.util;
 
+import java.nio.ByteBuffer;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 import com.bccapi.bitlib.crypto.digest.RIPEMD160Digest;
+import com.bccapi.bitlib.crypto.digest.RIPEMD160Lanes;
 
 /**
  * Various hashing utilities used in the Bitcoin system.
@@ -28,30 +31,33 @@ public class HashUtils {
 
    private static final String SHA256 = "SHA-256";
 
+   /**
+    * The length of a SHA-256 hash in bytes
+    */
+   public static final int SHA256_LENGTH = 32;
+
    public static byte[] sha256(byte[] data) {
       return sha256(data, 0, data.length);
    }
 
    public static byte[] sha256(byte[] data1, byte[] data2) {
+      MessageDigest digest = CONTEXT.get().sha256;
       try {
-         MessageDigest digest;
-         digest = MessageDigest.getInstance(SHA256);
          digest.update(data1, 0, data1.length);
          digest.update(data2, 0, data2.length);
          return digest.digest();
-      } catch (NoSuchAlgorithmException e) {
-         throw new RuntimeException(e); // Cannot happen.
+      } finally {
+         digest.reset();
       }
    }
 
    public static byte[] sha256(byte[] data, int offset, int length) {
+      MessageDigest digest = CONTEXT.get().sha256;
       try {
-         MessageDigest digest;
-         digest = MessageDigest.getInstance(SHA256);
          digest.update(data, offset, length);
          return digest.digest();
-      } catch (NoSuchAlgorithmException e) {
-         throw new RuntimeException(e); // Cannot happen.
+      } finally {
+         digest.reset();
       }
    }
 
@@ -60,29 +66,154 @@ public class HashUtils {
    }
 
    public static byte[] doubleSha256TwoBuffers(byte[] data1, byte[] data2) {
+      MessageDigest digest = CONTEXT.get().sha256;
       try {
-         MessageDigest digest;
-         digest = MessageDigest.getInstance(SHA256);
          digest.update(data1, 0, data1.length);
          digest.update(data2, 0, data2.length);
          return digest.digest(digest.digest());
-      } catch (NoSuchAlgorithmException e) {
-         throw new RuntimeException(e); // Cannot happen.
+      } finally {
+         digest.reset();
       }
    }
 
    public static byte[] doubleSha256(byte[] data, int offset, int length) {
+      byte[] out = new byte[SHA256_LENGTH];
+      doubleSha256(data, offset, length, out, 0);
+      return out;
+   }
+
+   /**
+    * Create a new SHA-256 message digest, for callers that need to keep or
+    * clone the state of a digest. Copying the reset digest of the current
+    * thread is cheaper than looking up the provider again.
+    */
+   public static MessageDigest createSha256() {
       try {
-         MessageDigest digest;
-         digest = MessageDigest.getInstance(SHA256);
-         digest.update(data, offset, length);
-         return digest.digest(digest.digest());
-      } catch (NoSuchAlgorithmException e) {
+         return (MessageDigest) CONTEXT.get().sha256.clone();
+      } catch (CloneNotSupportedException e) {
+         try {
+            return MessageDigest.getInstance(SHA256);
+         } catch (NoSuchAlgorithmException e2) {
+            throw new RuntimeException(e2); // Cannot happen.
+         }
+      }
+   }
+
+   /**
+    * Calculate the SHA-256 of a range of bytes and write the 32 byte result to
+    * an output buffer. This does not allocate, as each thread reuses its own
+    * digest.
+    */
+   public static void sha256(byte[] data, int offset, int length, byte[] out, int outOffset) {
+      Context context = CONTEXT.get();
+      try {
+         context.sha256.update(data, offset, length);
+         finish(context, out, outOffset);
+      } finally {
+         // Leave the digest reset even if a range was bad
+         context.sha256.reset();
+      }
+   }
+
+   /**
+    * Calculate the double SHA-256 of a range of bytes and write the 32 byte
+    * result to an output buffer. This does not allocate, as each thread reuses
+    * its own digest.
+    */
+   public static void doubleSha256(byte[] data, int offset, int length, byte[] out, int outOffset) {
+      Context context = CONTEXT.get();
+      try {
+         context.sha256.update(data, offset, length);
+         finishDouble(context, out, outOffset);
+      } finally {
+         // Leave the digest reset even if a range was bad
+         context.sha256.reset();
+      }
+   }
+
+   /**
+    * Calculate the SHA-256 of the remaining bytes of a buffer and put the 32
+    * byte result into an output buffer. The position of the input buffer is
+    * moved to its limit, and the position of the output buffer is advanced by
+    * 32.
+    */
+   public static void sha256(ByteBuffer data, ByteBuffer out) {
+      Context context = CONTEXT.get();
+      try {
+         context.sha256.update(data);
+         finish(context, context.buffer, 0);
+         out.put(context.buffer, 0, SHA256_LENGTH);
+      } finally {
+         // Leave the digest reset even if a range was bad
+         context.sha256.reset();
+      }
+   }
+
+   /**
+    * Calculate the double SHA-256 of the remaining bytes of a buffer and put
+    * the 32 byte result into an output buffer. The position of the input buffer
+    * is moved to its limit, and the position of the output buffer is advanced
+    * by 32.
+    */
+   public static void doubleSha256(ByteBuffer data, ByteBuffer out) {
+      Context context = CONTEXT.get();
+      try {
+         context.sha256.update(data);
+         finishDouble(context, context.buffer, 0);
+         out.put(context.buffer, 0, SHA256_LENGTH);
+      } finally {
+         // Leave the digest reset even if a range was bad
+         context.sha256.reset();
+      }
+   }
+
+   /**
+    * Calculate the four byte checksum used by Base58 encoded data, which is
+    * the start of the double SHA-256 of the data, and write it to an output
+    * buffer. This does not allocate.
+    */
+   public static void checksum(byte[] data, int offset, int length, byte[] out, int outOffset) {
+      Context context = CONTEXT.get();
+      try {
+         context.sha256.update(data, offset, length);
+         finishDouble(context, context.buffer, 0);
+         System.arraycopy(context.buffer, 0, out, outOffset, 4);
+      } finally {
+         // Leave the digest reset even if a range was bad
+         context.sha256.reset();
+      }
+   }
+
+   /**
+    * Finish a SHA-256 digest, hash the result once more and write the 32 byte
+    * double SHA-256 to an output buffer. The digest is reset afterwards, also
+    * when the output range is bad.
+    */
+   public static void finishDoubleSha256(MessageDigest digest, byte[] out, int outOffset) {
+      try {
+         digest.digest(out, outOffset, SHA256_LENGTH);
+         digest.update(out, outOffset, SHA256_LENGTH);
+         digest.digest(out, outOffset, SHA256_LENGTH);
+      } catch (DigestException e) {
          throw new RuntimeException(e); // Cannot happen.
+      } finally {
+         digest.reset();
       }
    }
 
-   private static final RIPEMD160Digest ripeMD160 = new RIPEMD160Digest();
+   private static void finish(Context context, byte[] out, int outOffset) {
+      try {
+         context.sha256.digest(out, outOffset, SHA256_LENGTH);
+      } catch (DigestException e) {
+         throw new RuntimeException(e); // Cannot happen.
+      }
+   }
+
+   private static void finishDouble(Context context, byte[] out, int outOffset) {
+      finish(context, context.buffer, 0);
+      context.sha256.update(context.buffer, 0, SHA256_LENGTH);
+      finish(context, out, outOffset);
+   }
 
    /**
     * Calculate the RipeMd160 value of the SHA-256 of an array of bytes. This is
@@ -92,17 +223,107 @@ public class HashUtils {
     *           A Bitcoin public key as an array of bytes.
     * @return The Bitcoin address as an array of bytes.
     */
-   public static synchronized byte[] addressHash(byte[] pubkeyBytes) {
+   public static byte[] addressHash(byte[] pubkeyBytes) {
+      byte[] out = new byte[20];
+      addressHash(pubkeyBytes, 0, pubkeyBytes.length, out, 0);
+      return out;
+   }
+
+   /**
+    * Calculate the RipeMd160 value of the SHA-256 of a range of bytes and
+    * write the 20 byte result to an output buffer. This does not allocate, and
+    * threads calling it do not contend, as each thread uses its own digests.
+    * 
+    * @param data
+    *           The array holding the bytes to hash
+    * @param offset
+    *           The offset of the first byte to hash
+    * @param length
+    *           The number of bytes to hash
+    * @param out
+    *           The array to write the result to
+    * @param outOffset
+    *           The offset at which the result is written
+    */
+   public static void addressHash(byte[] data, int offset, int length, byte[] out, int outOffset) {
+      Context context = CONTEXT.get();
       try {
-         byte[] sha256 = MessageDigest.getInstance(SHA256).digest(pubkeyBytes);
-         byte[] out = new byte[20];
-         ripeMD160.update(sha256, 0, sha256.length);
-         ripeMD160.doFinal(out, 0); // This also resets the hash function for
-                                    // next use
-         return out;
-      } catch (NoSuchAlgorithmException e) {
-         throw new RuntimeException(e); // Cannot happen.
+         context.sha256.update(data, offset, length);
+         finish(context, context.buffer, 0);
+         RIPEMD160Digest.hash32(context.buffer, 0, out, outOffset);
+      } finally {
+         // Leave the digest reset even if a range was bad
+         context.sha256.reset();
+      }
+   }
+
+   /**
+    * Calculate the address hashes of many public keys at once. Each key is
+    * hashed with SHA-256 on its own, which leaves that to the platform digest
+    * and any hardware support it has. The RIPEMD160 hashes of the results are
+    * then calculated {@link RIPEMD160Lanes#LANES} at a time in lockstep.
+    * 
+    * @param pubkeys
+    *           The public keys as arrays of bytes
+    * @return The 20 byte address hash of each public key
+    */
+   public static byte[][] addressHash(byte[][] pubkeys) {
+      Context context = CONTEXT.get();
+      if (context.lanes == null) {
+         context.lanes = new RIPEMD160Lanes();
+         context.laneInput = new byte[RIPEMD160Lanes.LANES * SHA256_LENGTH];
+         context.laneOutput = new byte[RIPEMD160Lanes.LANES * 20];
       }
+      byte[][] result = new byte[pubkeys.length][];
+      for (int start = 0; start < pubkeys.length; start += RIPEMD160Lanes.LANES) {
+         int count = Math.min(RIPEMD160Lanes.LANES, pubkeys.length - start);
+         for (int i = 0; i < count; i++) {
+            byte[] pubkey = pubkeys[start + i];
+            try {
+               context.sha256.update(pubkey, 0, pubkey.length);
+               finish(context, context.laneInput, i * SHA256_LENGTH);
+            } finally {
+               context.sha256.reset();
+            }
+         }
+         context.lanes.hash32(context.laneInput, 0, count, context.laneOutput, 0);
+         for (int i = 0; i < count; i++) {
+            byte[] hash = new byte[20];
+            System.arraycopy(context.laneOutput, i * 20, hash, 0, 20);
+            result[start + i] = hash;
+         }
+      }
+      return result;
    }
 
+   /**
+    * The digests used by a single thread. Every operation leaves them reset,
+    * also when it fails on a bad range, as resetting a digest that is already
+    * reset costs next to nothing.
+    */
+   private static class Context {
+      private final MessageDigest sha256;
+      private final byte[] buffer;
+      // Created on first use of the batch address hash
+      private RIPEMD160Lanes lanes;
+      private byte[] laneInput;
+      private byte[] laneOutput;
+
+      private Context() {
+         try {
+            sha256 = MessageDigest.getInstance(SHA256);
+         } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e); // Cannot happen.
+         }
+         buffer = new byte[SHA256_LENGTH];
+      }
+   }
+
+   private static final ThreadLocal<Context> CONTEXT = new ThreadLocal<Context>() {
+      @Override
+      protected Context initialValue() {
+         return new Context();
+      }
+   };
+
 }
@@ -0,0 +1,444 @@
+package com.bccapi.bitlib.util;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An open-addressing hash map for keys that can be written as a fixed number
+ * of longs, such as hashes and outpoints.
+ * <p>
+ * The keys are stored inline in a single long array and the values in a
+ * parallel object array, so an entry costs no objects beyond its value. Slots
+ * are found by linear probing and removals shift the following entries back,
+ * so the table never fills up with deleted markers. Keys are recreated from
+ * their longs when they are iterated over.
+ * <p>
+ * Null keys are not allowed, null values are. Like {@link java.util.HashMap}
+ * instances are not thread-safe.
+ */
+public abstract class InlineKeyMap<K, V> extends AbstractMap<K, V> {
+
+   private static final int MINIMUM_CAPACITY = 16;
+
+   // Stands in for null values, as a null value marks an empty slot
+   private static final Object NULL_VALUE = new Object();
+
+   private final int _words;
+   private long[] _keys;
+   private Object[] _values;
+   private int _size;
+   private int _threshold;
+   private Set<Map.Entry<K, V>> _entrySet;
+
+   /**
+    * @param words
+    *           The number of longs needed to hold a key
+    * @param expectedSize
+    *           The number of entries the map can hold before it grows
+    */
+   protected InlineKeyMap(int words, int expectedSize) {
+      _words = words;
+      int capacity = MINIMUM_CAPACITY;
+      while (capacity - capacity / 4 <= expectedSize) {
+         capacity <<= 1;
+      }
+      allocate(capacity);
+   }
+
+   /**
+    * Cast an object to the key type, or return null if it is not a key of this
+    * map.
+    */
+   protected abstract K asKey(Object object);
+
+   /**
+    * Calculate the hash of a key. It must equal the hash of the longs the key
+    * is stored as.
+    */
+   protected abstract int hash(K key);
+
+   /**
+    * Calculate the hash of a key stored at an offset in an array
+    */
+   protected abstract int hash(long[] words, int offset);
+
+   /**
+    * Determine whether a key equals the key stored at an offset in an array
+    */
+   protected abstract boolean matches(K key, long[] words, int offset);
+
+   /**
+    * Store a key at an offset in an array
+    */
+   protected abstract void putKey(K key, long[] words, int offset);
+
+   /**
+    * Create a key from the longs at an offset in an array
+    */
+   protected abstract K createKey(long[] words, int offset);
+
+   /**
+    * Mix the bits of a long into a hash, for keys whose longs are not
+    * uniformly distributed
+    */
+   protected static int mix(long h) {
+      h ^= h >>> 29;
+      h *= 0xBF58476D1CE4E5B9L;
+      return (int) (h ^ (h >>> 32));
+   }
+
+   private void allocate(int capacity) {
+      _keys = new long[capacity * _words];
+      _values = new Object[capacity];
+      _threshold = capacity - capacity / 4;
+   }
+
+   /**
+    * Find the slot of a key. If the key is not present the complement of the
+    * empty slot where it would be inserted is returned.
+    */
+   private int find(K key) {
+      int mask = _values.length - 1;
+      int slot = hash(key) & mask;
+      while (_values[slot] != null) {
+         if (matches(key, _keys, slot * _words)) {
+            return slot;
+         }
+         slot = (slot + 1) & mask;
+      }
+      return ~slot;
+   }
+
+   private void grow() {
+      long[] oldKeys = _keys;
+      Object[] oldValues = _values;
+      allocate(oldValues.length * 2);
+      int mask = _values.length - 1;
+      for (int oldSlot = 0; oldSlot < oldValues.length; oldSlot++) {
+         if (oldValues[oldSlot] == null) {
+            continue;
+         }
+         int slot = hash(oldKeys, oldSlot * _words) & mask;
+         while (_values[slot] != null) {
+            slot = (slot + 1) & mask;
+         }
+         System.arraycopy(oldKeys, oldSlot * _words, _keys, slot * _words, _words);
+         _values[slot] = oldValues[oldSlot];
+      }
+   }
+
+   /**
+    * Remove the entry in a slot and move back the entries after it that would
+    * otherwise no longer be found. Entries only ever move towards the removed
+    * slot within the run of occupied slots that holds it.
+    */
+   private void removeSlot(int slot) {
+      int mask = _values.length - 1;
+      int gap = slot;
+      int next = (gap + 1) & mask;
+      while (_values[next] != null) {
+         int home = hash(_keys, next * _words) & mask;
+         // Move the entry if the gap lies between its home slot and its slot
+         if (((next - home) & mask) >= ((next - gap) & mask)) {
+            System.arraycopy(_keys, next * _words, _keys, gap * _words, _words);
+            _values[gap] = _values[next];
+            gap = next;
+         }
+         next = (next + 1) & mask;
+      }
+      _values[gap] = null;
+      _size--;
+   }
+
+   @SuppressWarnings("unchecked")
+   private V valueAt(int slot) {
+      Object value = _values[slot];
+      return value == NULL_VALUE ? null : (V) value;
+   }
+
+   @Override
+   public int size() {
+      return _size;
+   }
+
+   @Override
+   public boolean containsKey(Object object) {
+      K key = asKey(object);
+      return key != null && find(key) >= 0;
+   }
+
+   @Override
+   public V get(Object object) {
+      K key = asKey(object);
+      if (key == null) {
+         return null;
+      }
+      int slot = find(key);
+      return slot < 0 ? null : valueAt(slot);
+   }
+
+   @Override
+   public V put(K key, V value) {
+      if (key == null) {
+         throw new NullPointerException("Null keys are not allowed");
+      }
+      Object stored = value == null ? NULL_VALUE : value;
+      int slot = find(key);
+      if (slot >= 0) {
+         V old = valueAt(slot);
+         _values[slot] = stored;
+         return old;
+      }
+      if (_size >= _threshold) {
+         grow();
+         slot = find(key);
+      }
+      slot = ~slot;
+      putKey(key, _keys, slot * _words);
+      _values[slot] = stored;
+      _size++;
+      return null;
+   }
+
+   @Override
+   public V remove(Object object) {
+      K key = asKey(object);
+      if (key == null) {
+         return null;
+      }
+      int slot = find(key);
+      if (slot < 0) {
+         return null;
+      }
+      V old = valueAt(slot);
+      removeSlot(slot);
+      return old;
+   }
+
+   @Override
+   public void clear() {
+      for (int i = 0; i < _values.length; i++) {
+         _values[i] = null;
+      }
+      _size = 0;
+   }
+
+   @Override
+   public Set<Map.Entry<K, V>> entrySet() {
+      if (_entrySet == null) {
+         _entrySet = new AbstractSet<Map.Entry<K, V>>() {
+
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+               return new SlotIterator<Map.Entry<K, V>>() {
+
+                  @Override
+                  protected Map.Entry<K, V> get(int slot) {
+                     return new SlotEntry(slot);
+                  }
+               };
+            }
+
+            @Override
+            public int size() {
+               return _size;
+            }
+
+            @Override
+            public void clear() {
+               InlineKeyMap.this.clear();
+            }
+         };
+      }
+      return _entrySet;
+   }
+
+   /**
+    * The keys, iterated over without creating entries
+    */
+   @Override
+   public Set<K> keySet() {
+      return new AbstractSet<K>() {
+
+         @Override
+         public Iterator<K> iterator() {
+            return new SlotIterator<K>() {
+
+               @Override
+               protected K get(int slot) {
+                  return createKey(_keys, slot * _words);
+               }
+            };
+         }
+
+         @Override
+         public int size() {
+            return _size;
+         }
+
+         @Override
+         public boolean contains(Object object) {
+            return containsKey(object);
+         }
+
+         @Override
+         public boolean remove(Object object) {
+            K key = asKey(object);
+            if (key == null) {
+               return false;
+            }
+            int slot = find(key);
+            if (slot < 0) {
+               return false;
+            }
+            removeSlot(slot);
+            return true;
+         }
+
+         @Override
+         public void clear() {
+            InlineKeyMap.this.clear();
+         }
+      };
+   }
+
+   /**
+    * The values, iterated over without creating entries or keys
+    */
+   @Override
+   public Collection<V> values() {
+      return new AbstractCollection<V>() {
+
+         @Override
+         public Iterator<V> iterator() {
+            return new SlotIterator<V>() {
+
+               @Override
+               protected V get(int slot) {
+                  return valueAt(slot);
+               }
+            };
+         }
+
+         @Override
+         public int size() {
+            return _size;
+         }
+
+         @Override
+         public void clear() {
+            InlineKeyMap.this.clear();
+         }
+      };
+   }
+
+   /**
+    * Visits the slots in order, starting after an empty slot. As removals only
+    * move entries back within a run of occupied slots, and no run can wrap
+    * past the empty starting slot, an entry moved by a removal is always one
+    * that has not been visited yet.
+    */
+   private abstract class SlotIterator<T> implements Iterator<T> {
+      private final int _start;
+      private int _position;
+      private int _current;
+
+      private SlotIterator() {
+         int start = 0;
+         while (_values[start] != null) {
+            start++;
+         }
+         _start = start;
+         _position = 1;
+         _current = -1;
+      }
+
+      protected abstract T get(int slot);
+
+      @Override
+      public boolean hasNext() {
+         int mask = _values.length - 1;
+         while (_position < _values.length) {
+            if (_values[(_start + _position) & mask] != null) {
+               return true;
+            }
+            _position++;
+         }
+         return false;
+      }
+
+      @Override
+      public T next() {
+         if (!hasNext()) {
+            throw new NoSuchElementException();
+         }
+         _current = (_start + _position) & (_values.length - 1);
+         _position++;
+         return get(_current);
+      }
+
+      @Override
+      public void remove() {
+         if (_current == -1) {
+            throw new IllegalStateException();
+         }
+         removeSlot(_current);
+         // Another entry may have moved into the slot we just removed
+         _position--;
+         _current = -1;
+      }
+   }
+
+   private class SlotEntry implements Map.Entry<K, V> {
+      private final int _slot;
+
+      private SlotEntry(int slot) {
+         _slot = slot;
+      }
+
+      @Override
+      public K getKey() {
+         return createKey(_keys, _slot * _words);
+      }
+
+      @Override
+      public V getValue() {
+         return valueAt(_slot);
+      }
+
+      @Override
+      public V setValue(V value) {
+         V old = valueAt(_slot);
+         _values[_slot] = value == null ? NULL_VALUE : value;
+         return old;
+      }
+
+      @Override
+      public boolean equals(Object other) {
+         if (!(other instanceof Map.Entry)) {
+            return false;
+         }
+         Map.Entry<?, ?> e = (Map.Entry<?, ?>) other;
+         V value = getValue();
+         return getKey().equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+      }
+
+      @Override
+      public int hashCode() {
+         V value = getValue();
+         return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+      }
+
+      @Override
+      public String toString() {
+         return getKey() + "=" + getValue();
+      }
+   }
+
+}
@@ -0,0 +1,60 @@
+package com.bccapi.bitlib.util;
+
+import com.bccapi.bitlib.model.OutPoint;
+
+/**
+ * A hash map keyed by {@link OutPoint}, which stores the keys inline as the
+ * four longs of the transaction hash followed by the output index. See
+ * {@link InlineKeyMap}.
+ */
+public class OutPointMap<V> extends InlineKeyMap<OutPoint, V> {
+
+   public OutPointMap() {
+      this(0);
+   }
+
+   public OutPointMap(int expectedSize) {
+      super(5, expectedSize);
+   }
+
+   @Override
+   protected OutPoint asKey(Object object) {
+      return object instanceof OutPoint ? (OutPoint) object : null;
+   }
+
+   @Override
+   protected int hash(OutPoint key) {
+      return key.hash.hashCode() + mix(key.index);
+   }
+
+   @Override
+   protected int hash(long[] words, int offset) {
+      return Sha256Hash.hashCode(words[offset], words[offset + 1], words[offset + 2], words[offset + 3])
+            + mix((int) words[offset + 4]);
+   }
+
+   @Override
+   protected boolean matches(OutPoint key, long[] words, int offset) {
+      Sha256Hash hash = key.hash;
+      return words[offset + 4] == key.index && words[offset] == hash.getWord(0)
+            && words[offset + 1] == hash.getWord(1) && words[offset + 2] == hash.getWord(2)
+            && words[offset + 3] == hash.getWord(3);
+   }
+
+   @Override
+   protected void putKey(OutPoint key, long[] words, int offset) {
+      Sha256Hash hash = key.hash;
+      words[offset] = hash.getWord(0);
+      words[offset + 1] = hash.getWord(1);
+      words[offset + 2] = hash.getWord(2);
+      words[offset + 3] = hash.getWord(3);
+      words[offset + 4] = key.index;
+   }
+
+   @Override
+   protected OutPoint createKey(long[] words, int offset) {
+      Sha256Hash hash = new Sha256Hash(words[offset], words[offset + 1], words[offset + 2], words[offset + 3]);
+      return new OutPoint(hash, (int) words[offset + 4]);
+   }
+
+}
@@ -1,71 +1,142 @@
 package com.bccapi.bitlib.util;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
+import java.nio.ByteOrder;
 
-public class Sha256Hash implements Serializable {
+/**
+ * A SHA-256 hash. The 32 bytes are held as four longs rather than an array,
+ * which halves the heap taken by a hash and makes comparing and reversing a
+ * hash cheap. Instances are immutable and may be shared between threads.
+ * <p>
+ * The serialized form is still the one of the byte array based hash, so hashes
+ * stored before the change can be read, and stored hashes can be read by
+ * older versions.
+ */
+public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
    private static final long serialVersionUID = 1L;
 
-   public static final Sha256Hash ZERO_HASH = new Sha256Hash();
+   // The fields of the byte array based hash, _hash being its lazily
+   // calculated hash code with -1 meaning not calculated
+   private static final ObjectStreamField[] serialPersistentFields = new ObjectStreamField[] {
+         new ObjectStreamField("_bytes", byte[].class), new ObjectStreamField("_hash", int.class) };
+
+   public static final Sha256Hash ZERO_HASH = new Sha256Hash(0, 0, 0, 0);
    public static final int HASH_LENGTH = 32;
 
-   final private byte[] _bytes;
-   private int _hash;
+   // The bytes in big endian order, most significant long first
+   private final long _l0;
+   private final long _l1;
+   private final long _l2;
+   private final long _l3;
+   // Only set while deserializing, see readResolve()
+   private transient byte[] _serializedBytes;
 
-   private Sha256Hash() {
-      this._bytes = new byte[32];
-      _hash = -1;
+   Sha256Hash(long l0, long l1, long l2, long l3) {
+      _l0 = l0;
+      _l1 = l1;
+      _l2 = l2;
+      _l3 = l3;
    }
 
    public Sha256Hash(byte[] bytes) {
-      this._bytes = bytes;
-      _hash = -1;
+      this(checkLength(bytes), 0, false);
    }
 
    public Sha256Hash(byte[] bytes, boolean reverse) {
-      if (reverse) {
-         this._bytes = BitUtils.reverseBytes(bytes);
-      } else {
-         this._bytes = bytes;
-
-      }
-      _hash = -1;
+      this(checkLength(bytes), 0, reverse);
    }
 
    public Sha256Hash(byte[] bytes, int offset, boolean reverse) {
-      _bytes = new byte[32];
       if (reverse) {
-         // Copy 32 byte hash from offset and reverse byte order
-         for (int i = 0; i < _bytes.length; i++) {
-            _bytes[i] = bytes[offset + 32 - 1 - i];
-         }
+         // Read 32 byte hash from offset and reverse byte order
+         _l0 = Long.reverseBytes(getLong(bytes, offset + 24));
+         _l1 = Long.reverseBytes(getLong(bytes, offset + 16));
+         _l2 = Long.reverseBytes(getLong(bytes, offset + 8));
+         _l3 = Long.reverseBytes(getLong(bytes, offset));
       } else {
-         System.arraycopy(bytes, offset, _bytes, 0, 32);
+         _l0 = getLong(bytes, offset);
+         _l1 = getLong(bytes, offset + 8);
+         _l2 = getLong(bytes, offset + 16);
+         _l3 = getLong(bytes, offset + 24);
       }
-      _hash = -1;
    }
 
    public Sha256Hash(ByteBuffer buf, boolean reverse) {
-      byte[] bytes = new byte[32];
-      buf.get(bytes, 0, 32);
+      long l0 = getLong(buf);
+      long l1 = getLong(buf);
+      long l2 = getLong(buf);
+      long l3 = getLong(buf);
       if (reverse) {
-         this._bytes = BitUtils.reverseBytes(bytes);
+         _l0 = Long.reverseBytes(l3);
+         _l1 = Long.reverseBytes(l2);
+         _l2 = Long.reverseBytes(l1);
+         _l3 = Long.reverseBytes(l0);
       } else {
-         this._bytes = bytes;
+         _l0 = l0;
+         _l1 = l1;
+         _l2 = l2;
+         _l3 = l3;
+      }
+   }
+
+   /**
+    * Get one of the four longs holding this hash, most significant first
+    */
+   long getWord(int index) {
+      switch (index) {
+      case 0:
+         return _l0;
+      case 1:
+         return _l1;
+      case 2:
+         return _l2;
+      default:
+         return _l3;
       }
-      _hash = -1;
    }
 
    public static Sha256Hash create(byte[] contents) {
-      try {
-         MessageDigest digest = MessageDigest.getInstance("SHA-256");
-         return new Sha256Hash(digest.digest(contents));
-      } catch (NoSuchAlgorithmException e) {
-         throw new RuntimeException(e); // Cannot happen.
+      return new Sha256Hash(HashUtils.sha256(contents));
+   }
+
+   private static byte[] checkLength(byte[] bytes) {
+      if (bytes.length != HASH_LENGTH) {
+         throw new IllegalArgumentException("A SHA-256 hash must be 32 bytes");
       }
+      return bytes;
+   }
+
+   private static long getLong(byte[] bytes, int offset) {
+      return ((bytes[offset] & 0xFFL) << 56) | ((bytes[offset + 1] & 0xFFL) << 48)
+            | ((bytes[offset + 2] & 0xFFL) << 40) | ((bytes[offset + 3] & 0xFFL) << 32)
+            | ((bytes[offset + 4] & 0xFFL) << 24) | ((bytes[offset + 5] & 0xFFL) << 16)
+            | ((bytes[offset + 6] & 0xFFL) << 8) | (bytes[offset + 7] & 0xFFL);
+   }
+
+   private static void putLong(long value, byte[] bytes, int offset) {
+      bytes[offset] = (byte) (value >>> 56);
+      bytes[offset + 1] = (byte) (value >>> 48);
+      bytes[offset + 2] = (byte) (value >>> 40);
+      bytes[offset + 3] = (byte) (value >>> 32);
+      bytes[offset + 4] = (byte) (value >>> 24);
+      bytes[offset + 5] = (byte) (value >>> 16);
+      bytes[offset + 6] = (byte) (value >>> 8);
+      bytes[offset + 7] = (byte) value;
+   }
+
+   private static long getLong(ByteBuffer buf) {
+      long value = buf.getLong();
+      return buf.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value);
+   }
+
+   private static void putLong(long value, ByteBuffer buf) {
+      buf.putLong(buf.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value));
    }
 
    @Override
@@ -75,40 +146,139 @@ public class Sha256Hash implements Serializable {
       }
       if (!(other instanceof Sha256Hash))
          return false;
-      return Arrays.equals(_bytes, ((Sha256Hash) other)._bytes);
+      Sha256Hash o = (Sha256Hash) other;
+      return _l0 == o._l0 && _l1 == o._l1 && _l2 == o._l2 && _l3 == o._l3;
    }
 
    @Override
    public int hashCode() {
-      if (_hash == -1) {
-         final int offset = _bytes.length - 4;
-         _hash = 0;
-         for (int i = 0; i < 4; i++) {
-            _hash <<= 8;
-            _hash |= (((int) _bytes[offset + i]) & 0xFF);
-         }
+      return hashCode(_l0, _l1, _l2, _l3);
+   }
+
+   /**
+    * Mix all 256 bits, so that hashes that are not uniformly distributed, such
+    * as the zero hash or hashes differing in a single byte, still spread well
+    * in hash tables
+    */
+   static int hashCode(long l0, long l1, long l2, long l3) {
+      long h = l0 * 0x9E3779B97F4A7C15L + l1;
+      h = h * 0x9E3779B97F4A7C15L + l2;
+      h = h * 0x9E3779B97F4A7C15L + l3;
+      h ^= h >>> 29;
+      h *= 0xBF58476D1CE4E5B9L;
+      return (int) (h ^ (h >>> 32));
+   }
+
+   /**
+    * Compare the bytes of two hashes as unsigned numbers in big endian order
+    */
+   @Override
+   public int compareTo(Sha256Hash other) {
+      int c = compareUnsigned(_l0, other._l0);
+      if (c != 0) {
+         return c;
+      }
+      c = compareUnsigned(_l1, other._l1);
+      if (c != 0) {
+         return c;
       }
-      return _hash;
+      c = compareUnsigned(_l2, other._l2);
+      if (c != 0) {
+         return c;
+      }
+      return compareUnsigned(_l3, other._l3);
+   }
+
+   private static int compareUnsigned(long a, long b) {
+      a += Long.MIN_VALUE;
+      b += Long.MIN_VALUE;
+      return a < b ? -1 : (a == b ? 0 : 1);
    }
 
    @Override
    public String toString() {
-      return HexUtils.toHex(_bytes);
+      return HexUtils.toHex(getBytes());
    }
 
+   /**
+    * Get the bytes of this hash as a new array of 32 bytes
+    */
    public byte[] getBytes() {
-      return _bytes;
+      byte[] bytes = new byte[HASH_LENGTH];
+      getBytes(bytes, 0, false);
+      return bytes;
+   }
+
+   /**
+    * Write the 32 bytes of this hash to a buffer without allocating
+    *
+    * @param reverse
+    *           Whether to write the bytes in reverse order
+    */
+   public void getBytes(byte[] bytes, int offset, boolean reverse) {
+      if (reverse) {
+         putLong(Long.reverseBytes(_l3), bytes, offset);
+         putLong(Long.reverseBytes(_l2), bytes, offset + 8);
+         putLong(Long.reverseBytes(_l1), bytes, offset + 16);
+         putLong(Long.reverseBytes(_l0), bytes, offset + 24);
+      } else {
+         putLong(_l0, bytes, offset);
+         putLong(_l1, bytes, offset + 8);
+         putLong(_l2, bytes, offset + 16);
+         putLong(_l3, bytes, offset + 24);
+      }
    }
 
    public void toByteBuffer(ByteBuffer buf, boolean reverse) {
       if (reverse) {
-         buf.put(BitUtils.reverseBytes(_bytes));
+         putLong(Long.reverseBytes(_l3), buf);
+         putLong(Long.reverseBytes(_l2), buf);
+         putLong(Long.reverseBytes(_l1), buf);
+         putLong(Long.reverseBytes(_l0), buf);
       } else {
-         buf.put(_bytes);
+         putLong(_l0, buf);
+         putLong(_l1, buf);
+         putLong(_l2, buf);
+         putLong(_l3, buf);
+      }
+   }
+
+   /**
+    * Get the hash with its bytes in reverse order
+    */
+   public Sha256Hash reverse() {
+      return new Sha256Hash(Long.reverseBytes(_l3), Long.reverseBytes(_l2), Long.reverseBytes(_l1),
+            Long.reverseBytes(_l0));
+   }
+
+   private void writeObject(ObjectOutputStream out) throws IOException {
+      ObjectOutputStream.PutField fields = out.putFields();
+      fields.put("_bytes", getBytes());
+      fields.put("_hash", -1);
+      out.writeFields();
+   }
+
+   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      ObjectInputStream.GetField fields = in.readFields();
+      byte[] bytes = (byte[]) fields.get("_bytes", null);
+      if (bytes == null || bytes.length != HASH_LENGTH) {
+         throw new InvalidObjectException("A SHA-256 hash must be 32 bytes");
       }
+      _serializedBytes = bytes;
+   }
+
+   /**
+    * The longs are final, so the hash read by {@link #readObject} is replaced
+    * with one built from its bytes
+    */
+   private Object readResolve() {
+      return new Sha256Hash(_serializedBytes, 0, false);
    }
 
+   /**
+    * Hashes are immutable, so this returns the hash itself
+    */
    public Sha256Hash duplicate() {
-      return new Sha256Hash(_bytes);
+      return this;
    }
 }
@@ -0,0 +1,51 @@
+package com.bccapi.bitlib.util;
+
+/**
+ * A hash map keyed by {@link Sha256Hash}, which stores the keys inline as
+ * four longs each. See {@link InlineKeyMap}.
+ */
+public class Sha256HashMap<V> extends InlineKeyMap<Sha256Hash, V> {
+
+   public Sha256HashMap() {
+      this(0);
+   }
+
+   public Sha256HashMap(int expectedSize) {
+      super(4, expectedSize);
+   }
+
+   @Override
+   protected Sha256Hash asKey(Object object) {
+      return object instanceof Sha256Hash ? (Sha256Hash) object : null;
+   }
+
+   @Override
+   protected int hash(Sha256Hash key) {
+      return key.hashCode();
+   }
+
+   @Override
+   protected int hash(long[] words, int offset) {
+      return Sha256Hash.hashCode(words[offset], words[offset + 1], words[offset + 2], words[offset + 3]);
+   }
+
+   @Override
+   protected boolean matches(Sha256Hash key, long[] words, int offset) {
+      return words[offset] == key.getWord(0) && words[offset + 1] == key.getWord(1)
+            && words[offset + 2] == key.getWord(2) && words[offset + 3] == key.getWord(3);
+   }
+
+   @Override
+   protected void putKey(Sha256Hash key, long[] words, int offset) {
+      words[offset] = key.getWord(0);
+      words[offset + 1] = key.getWord(1);
+      words[offset + 2] = key.getWord(2);
+      words[offset + 3] = key.getWord(3);
+   }
+
+   @Override
+   protected Sha256Hash createKey(long[] words, int offset) {
+      return new Sha256Hash(words[offset], words[offset + 1], words[offset + 2], words[offset + 3]);
+   }
+
+}
@@ -0,0 +1,58 @@
+package com.bccapi.bitlib.util;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * A set of {@link Sha256Hash}, which stores the hashes inline as four longs
+ * each. It is backed by a {@link Sha256HashMap}.
+ */
+public class Sha256HashSet extends AbstractSet<Sha256Hash> {
+
+   private final Sha256HashMap<Boolean> _map;
+
+   public Sha256HashSet() {
+      this(0);
+   }
+
+   public Sha256HashSet(int expectedSize) {
+      _map = new Sha256HashMap<Boolean>(expectedSize);
+   }
+
+   public Sha256HashSet(Collection<Sha256Hash> hashes) {
+      this(hashes.size());
+      addAll(hashes);
+   }
+
+   @Override
+   public Iterator<Sha256Hash> iterator() {
+      return _map.keySet().iterator();
+   }
+
+   @Override
+   public int size() {
+      return _map.size();
+   }
+
+   @Override
+   public boolean contains(Object object) {
+      return _map.containsKey(object);
+   }
+
+   @Override
+   public boolean add(Sha256Hash hash) {
+      return _map.put(hash, Boolean.TRUE) == null;
+   }
+
+   @Override
+   public boolean remove(Object object) {
+      return _map.remove(object) != null;
+   }
+
+   @Override
+   public void clear() {
+      _map.clear();
+   }
+
+}